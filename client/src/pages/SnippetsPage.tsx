@@ -290,7 +290,7 @@ function SnippetsPage() {
                 _id: snippet.id || 'unknown',
                 title: snippet.title,
                 language: snippet.language,
-                code: snippet.code,
+                code: snippet.code ?? snippet.preview ?? '',
                 userId: snippet.userId || 'unknown',
                 userName: 'Unknown User', // Backend doesn't return userName, would need to fetch user details
                 _creationTime: snippet.createdAt ? new Date(snippet.createdAt).getTime() : Date.now(),
@@ -327,7 +327,7 @@ function SnippetsPage() {
                 _id: snippet.id || 'unknown',
                 title: snippet.title,
                 language: snippet.language,
-                code: snippet.code,
+                code: snippet.code ?? snippet.preview ?? '',
                 userId: snippet.userId || 'unknown',
                 userName: 'Unknown User', // Backend doesn't return userName
                 _creationTime: snippet.createdAt ? new Date(snippet.createdAt).getTime() : Date.now(),
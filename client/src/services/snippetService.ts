@@ -3,7 +3,10 @@ import { apiRequest } from './api';
 export interface Snippet {
   id?: string;
   title: string;
-  code: string;
+  code: string; // Listing endpoints return preview instead; fetch the snippet for its code
+  preview?: string;
+  lineCount?: number;
+  starCount?: number;
   language: string;
   description?: string;
   tags?: string[];
@@ -2,6 +2,7 @@ package com.major.server.config;
 
 import com.major.server.service.JwtService;
 import com.major.server.service.UserService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -39,7 +40,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         // Skip JWT processing for public endpoints
         if (servletPath.startsWith("/api/auth") ||
-            servletPath.startsWith("/api/execute") ||
             servletPath.equals("/api/health") ||
             servletPath.startsWith("/api/snippets/public") ||
             servletPath.startsWith("/api/snippets/search") ||
@@ -59,7 +59,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         
         jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+        try {
+            userEmail = jwtService.extractUsername(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Execution is open to anonymous callers; a bad token just means no user
+            if (servletPath.startsWith("/api/execute")) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            throw e;
+        }
         
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails = this.userService.loadUserByUsername(userEmail);
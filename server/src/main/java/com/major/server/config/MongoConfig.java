@@ -2,10 +2,15 @@ package com.major.server.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
+// Blocking and reactive repositories share the package; each registrar only picks up its own kind
 @Configuration
 @EnableMongoAuditing
+@EnableReactiveMongoAuditing
 @EnableMongoRepositories(basePackages = "com.major.server.repository")
+@EnableReactiveMongoRepositories(basePackages = "com.major.server.repository")
 public class MongoConfig {
-}
\ No newline at end of file
+}
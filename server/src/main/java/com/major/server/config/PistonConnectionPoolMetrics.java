@@ -0,0 +1,44 @@
+package com.major.server.config;
+
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the per-host pool gauges Reactor Netty publishes for the Piston
+ * connection provider so they can be reported without a metrics registry.
+ */
+@Component
+public class PistonConnectionPoolMetrics implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<String, ConnectionPoolMetrics> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+                                ConnectionPoolMetrics metrics) {
+        pools.put(remoteAddress.toString(), metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(remoteAddress.toString());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        pools.forEach((remoteAddress, metrics) -> stats.put(remoteAddress, Map.of(
+                "active", metrics.acquiredSize(),
+                "idle", metrics.idleSize(),
+                "allocated", metrics.allocatedSize(),
+                "pending", metrics.pendingAcquireSize(),
+                "maxConnections", metrics.maxAllocatedSize(),
+                "maxPending", metrics.maxPendingAcquireSize()
+        )));
+        return stats;
+    }
+}
@@ -0,0 +1,114 @@
+package com.major.server.config;
+
+import com.major.server.model.UserTier;
+import com.major.server.service.TokenBucketRateLimiter;
+import com.major.server.service.UserTierResolver;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Throttles code execution requests (POST /api/execute/**) per authenticated user,
+ * or per client IP for anonymous callers. Runs after {@link JwtAuthenticationFilter}
+ * so the caller is known.
+ * <p>
+ * A request costs one token, except for batches: they cost one token per test
+ * case, which only the controller knows, so the filter leaves the bucket key in
+ * the {@link #KEY_ATTRIBUTE} request attribute and lets the batch through.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String KEY_ATTRIBUTE = RateLimitFilter.class.getName() + ".key";
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private static final String BATCH_PATH = "/api/execute/batch";
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final UserTierResolver userTierResolver;
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // Only trust X-Forwarded-For behind a proxy that overwrites it
+    @Value("${app.rate-limit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || !request.getServletPath().startsWith("/api/execute");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        String userId = currentUserId();
+        UserTier tier = userTierResolver.resolve(userId);
+        String key = userId != null ? userId : clientIp(request);
+
+        if (BATCH_PATH.equals(request.getServletPath())) {
+            request.setAttribute(KEY_ATTRIBUTE, key);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long result = rateLimiter.tryConsume(key, tier);
+        response.setHeader(LIMIT_HEADER, String.valueOf(rateLimiter.getCapacity(tier)));
+        response.setHeader(REMAINING_HEADER, String.valueOf(Math.max(result, 0)));
+
+        if (result < 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(result)));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * @param result a rejected {@link TokenBucketRateLimiter#tryConsume} result
+     */
+    public static long retryAfterSeconds(long result) {
+        return Math.max(1, (-result + 999) / 1000);
+    }
+
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() &&
+            !"anonymousUser".equals(authentication.getPrincipal())) {
+            return authentication.getName();
+        }
+        return null;
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma >= 0 ? forwardedFor.substring(0, comma) : forwardedFor).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -1,14 +1,76 @@
 package com.major.server.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    @Value("${app.piston.api.timeout:10000}")
+    private int timeoutMs;
+
+    @Value("${app.piston.pool.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${app.piston.pool.pending-acquire-max-count:500}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${app.piston.pool.pending-acquire-timeout-ms:5000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${app.piston.pool.max-idle-time-ms:30000}")
+    private long maxIdleTimeMs;
+
+    @Value("${app.piston.pool.max-life-time-ms:300000}")
+    private long maxLifeTimeMs;
+
+    @Value("${app.piston.pool.evict-interval-ms:30000}")
+    private long evictIntervalMs;
+
+    @Value("${app.piston.pool.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
     @Bean
     public WebClient.Builder webClientBuilder() {
         return WebClient.builder();
     }
-}
\ No newline at end of file
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider pistonConnectionProvider(PistonConnectionPoolMetrics poolMetrics) {
+        return ConnectionProvider.builder("piston")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictIntervalMs))
+                .metrics(true, () -> poolMetrics)
+                .build();
+    }
+
+    /**
+     * Shared client for all Piston calls. Connections are pooled and kept alive
+     * across executions instead of being set up for every request. Requests use
+     * absolute URLs because the target instance is picked per call.
+     */
+    @Bean
+    public WebClient pistonWebClient(WebClient.Builder webClientBuilder, ConnectionProvider pistonConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(pistonConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(Duration.ofMillis(timeoutMs));
+
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
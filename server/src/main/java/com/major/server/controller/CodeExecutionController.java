@@ -1,17 +1,41 @@
 package com.major.server.controller;
 
+import com.major.server.config.RateLimitFilter;
+import com.major.server.dto.BatchExecutionRequest;
+import com.major.server.dto.BatchExecutionResponse;
 import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.dto.CursorPage;
+import com.major.server.dto.ExecutionSummary;
+import com.major.server.dto.ExecutionStreamEvent;
 import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import com.major.server.service.BatchExecutionService;
 import com.major.server.service.CodeExecutionService;
+import com.major.server.service.ExecutionJobQueue;
+import com.major.server.service.ExecutionQueueFullException;
+import com.major.server.service.ExecutionStatsService;
+import com.major.server.service.ExecutionStreamService;
+import com.major.server.service.TokenBucketRateLimiter;
+import com.major.server.service.UnsupportedLanguageException;
+import com.major.server.service.UserTierResolver;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/execute")
@@ -19,37 +43,143 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class CodeExecutionController {
 
+    // Upper bound for long-polling GET /api/execute/{executionId}?waitMs=...
+    private static final long MAX_WAIT_MS = 30000;
+
     private final CodeExecutionService codeExecutionService;
+    private final ExecutionJobQueue executionJobQueue;
+    private final ExecutionStreamService executionStreamService;
+    private final BatchExecutionService batchExecutionService;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ExecutionStatsService executionStatsService;
+    private final UserTierResolver userTierResolver;
 
     @PostMapping
     public Mono<ResponseEntity<CodeExecution>> executeCode(@Valid @RequestBody CodeExecutionRequest request) {
         // Get user ID if authenticated, otherwise null for anonymous execution
         String userId = getCurrentUserId();
         
-        return codeExecutionService.executeCode(request, userId)
+        return codeExecutionService.executeCode(request, userId, userTierResolver.resolve(userId))
                 .map(ResponseEntity::ok)
+                .onErrorResume(UnsupportedLanguageException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorReturn(ResponseEntity.internalServerError().build());
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BatchExecutionResponse>> judge(@Valid @RequestBody BatchExecutionRequest request,
+                                                              HttpServletRequest httpRequest) {
+        String userId = getCurrentUserId();
+        UserTier tier = userTierResolver.resolve(userId);
+
+        // Every test case is a Piston run, so it costs a rate limit token of its own
+        HttpHeaders rateLimitHeaders = new HttpHeaders();
+        String rateLimitKey = (String) httpRequest.getAttribute(RateLimitFilter.KEY_ATTRIBUTE);
+        if (rateLimitKey != null) {
+            long result = rateLimiter.tryConsumeTokens(rateLimitKey, tier, request.getTestCases().size());
+            rateLimitHeaders.set(RateLimitFilter.LIMIT_HEADER, String.valueOf(rateLimiter.getCapacity(tier)));
+            rateLimitHeaders.set(RateLimitFilter.REMAINING_HEADER, String.valueOf(Math.max(result, 0)));
+            if (result < 0) {
+                return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .headers(rateLimitHeaders)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimitFilter.retryAfterSeconds(result)))
+                        .build());
+            }
+        }
+
+        return batchExecutionService.judge(request, userId, tier)
+                .map(response -> ResponseEntity.ok().headers(rateLimitHeaders).body(response))
+                .onErrorResume(UnsupportedLanguageException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().headers(rateLimitHeaders).build()))
+                .onErrorReturn(ResponseEntity.internalServerError().headers(rateLimitHeaders).build());
+    }
+
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ExecutionStreamEvent>> streamExecution(@Valid @RequestBody CodeExecutionRequest request) {
+        String userId = getCurrentUserId();
+
+        return executionStreamService.streamExecution(request, userId, userTierResolver.resolve(userId))
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(event.getType())
+                        .build());
+    }
+
+    @PostMapping("/submit")
+    public Mono<ResponseEntity<Map<String, Object>>> submitExecution(@Valid @RequestBody CodeExecutionRequest request) {
+        String userId = getCurrentUserId();
+
+        return executionJobQueue.submit(request, userId, userTierResolver.resolve(userId))
+                .map(execution -> ResponseEntity.accepted()
+                        .location(URI.create("/api/execute/" + execution.getId()))
+                        .body(Map.<String, Object>of(
+                                "executionId", execution.getId(),
+                                "status", execution.getStatus()
+                        )))
+                .onErrorResume(ExecutionQueueFullException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                .build()))
+                .onErrorResume(UnsupportedLanguageException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
                 .onErrorReturn(ResponseEntity.internalServerError().build());
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<CodeExecution>> getExecutionHistory() {
+    public Mono<ResponseEntity<CursorPage<ExecutionSummary>>> getExecutionHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         String userId = getCurrentUserId();
         if (userId == null) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
-        
-        List<CodeExecution> history = codeExecutionService.getExecutionHistory(userId);
-        return ResponseEntity.ok(history);
+
+        return codeExecutionService.getExecutionHistory(userId, cursor, limit)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
     }
 
-    @GetMapping("/{executionId}")
-    public ResponseEntity<CodeExecution> getExecution(@PathVariable String executionId) {
-        try {
-            CodeExecution execution = codeExecutionService.getExecution(executionId);
-            return ResponseEntity.ok(execution);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getExecutionMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(codeExecutionService.getExecutionMetrics());
+        metrics.put("jobQueue", executionJobQueue.stats());
+        metrics.put("rateLimiter", rateLimiter.stats());
+        return ResponseEntity.ok(metrics);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getExecutionStats() {
+        return ResponseEntity.ok(executionStatsService.summary());
+    }
+
+    @GetMapping("/stats/languages/{language}")
+    public ResponseEntity<Map<String, Object>> getLanguageStats(@PathVariable String language) {
+        return executionStatsService.languageStats(language)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/stats/me")
+    public Mono<ResponseEntity<Map<String, Object>>> getMyStats() {
+        String userId = getCurrentUserId();
+        if (userId == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
         }
+        return executionStatsService.userStats(userId).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{executionId}")
+    public Mono<ResponseEntity<CodeExecution>> getExecution(
+            @PathVariable String executionId,
+            @RequestParam(defaultValue = "0") long waitMs,
+            @RequestParam(defaultValue = "false") boolean includeCode) {
+
+        // Long-poll: wait for a queued execution to finish before reading its current state
+        Mono<CodeExecution> completion = waitMs > 0
+                ? executionJobQueue.awaitCompletion(executionId, Duration.ofMillis(Math.min(waitMs, MAX_WAIT_MS)))
+                : Mono.empty();
+
+        return completion
+                .switchIfEmpty(codeExecutionService.getExecution(executionId, includeCode))
+                .map(ResponseEntity::ok)
+                .onErrorReturn(ResponseEntity.notFound().build());
     }
 
     private String getCurrentUserId() {
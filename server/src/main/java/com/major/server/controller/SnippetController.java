@@ -1,5 +1,7 @@
 package com.major.server.controller;
 
+import com.major.server.dto.CursorPage;
+import com.major.server.dto.SnippetSummary;
 import com.major.server.model.Snippet;
 import com.major.server.service.SnippetService;
 import lombok.RequiredArgsConstructor;
@@ -7,7 +9,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/snippets")
@@ -22,62 +28,110 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class SnippetController {
 
+    // Sorts of /public that an index serves; anything else would scan and sort in memory
+    private static final Set<String> SORTABLE_FIELDS = Set.of("createdAt", "starCount");
+
     private final SnippetService snippetService;
 
     @GetMapping("/public")
-    public ResponseEntity<Page<Snippet>> getPublicSnippets(
+    public ResponseEntity<Page<SnippetSummary>> getPublicSnippets(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir) {
         
+        if (!SORTABLE_FIELDS.contains(sortBy)) {
+            return ResponseEntity.badRequest().build();
+        }
         Sort sort = sortDir.equalsIgnoreCase("asc") ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
         
         Pageable pageable = PageRequest.of(page, size, sort);
-        Page<Snippet> snippets = snippetService.findPublicSnippets(pageable);
+        Page<SnippetSummary> snippets = snippetService.findPublicSnippets(pageable);
         
         return ResponseEntity.ok(snippets);
     }
 
+    @GetMapping("/popular")
+    public ResponseEntity<Page<SnippetSummary>> getPopularSnippets(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        // Sorted by star count in the repository query
+        Page<SnippetSummary> snippets = snippetService.findPopularSnippets(PageRequest.of(page, size));
+        return ResponseEntity.ok(snippets);
+    }
+
+    /**
+     * Cursor-paginated public feed; pass {@code nextCursor} back as {@code cursor}.
+     * Newest first by default, or {@code sort=popular}, optionally filtered by
+     * {@code language} or {@code tag}.
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<CursorPage<SnippetSummary>> getFeed(
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        
+        try {
+            return ResponseEntity.ok(snippetService.findPublicFeed(sort, language, tag, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<Page<Snippet>> searchSnippets(
+    public ResponseEntity<Page<SnippetSummary>> searchSnippets(
             @RequestParam String q,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<Snippet> snippets = snippetService.searchPublicSnippets(q, pageable);
+        Page<SnippetSummary> snippets = snippetService.searchPublicSnippets(q, pageable);
         
         return ResponseEntity.ok(snippets);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Snippet> getSnippet(@PathVariable String id) {
-        return snippetService.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<byte[]> getSnippet(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Served as pre-serialized JSON; clients revalidate with the ETag
+        return snippetService.findCachedById(id)
+                .map(snippet -> snippet.matches(ifNoneMatch)
+                        ? ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(snippet.etag())
+                                .cacheControl(CacheControl.noCache())
+                                .<byte[]>build()
+                        : ResponseEntity.ok()
+                                .eTag(snippet.etag())
+                                .cacheControl(CacheControl.noCache())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(snippet.json()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/my")
-    public ResponseEntity<List<Snippet>> getMySnippets() {
+    public ResponseEntity<List<SnippetSummary>> getMySnippets() {
         String userId = getCurrentUserId();
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
         
-        List<Snippet> snippets = snippetService.findByUserId(userId);
+        List<SnippetSummary> snippets = snippetService.findByUserId(userId);
         return ResponseEntity.ok(snippets);
     }
 
     @GetMapping("/starred")
-    public ResponseEntity<List<Snippet>> getStarredSnippets() {
+    public ResponseEntity<List<SnippetSummary>> getStarredSnippets() {
         String userId = getCurrentUserId();
         if (userId == null) {
             return ResponseEntity.badRequest().build();
         }
         
-        List<Snippet> snippets = snippetService.findSnippetsStarredByUser(userId);
+        List<SnippetSummary> snippets = snippetService.findSnippetsStarredByUser(userId);
         return ResponseEntity.ok(snippets);
     }
 
@@ -0,0 +1,34 @@
+package com.major.server.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchExecutionRequest {
+
+    @NotBlank(message = "Code is required")
+    private String code;
+
+    @NotBlank(message = "Language is required")
+    private String language;
+
+    @NotEmpty(message = "At least one test case is required")
+    @Size(max = 50, message = "At most 50 test cases can be run at once")
+    @Valid
+    private List<TestCase> testCases;
+
+    @Data
+    public static class TestCase {
+
+        private String stdin;
+
+        @NotNull(message = "Expected output is required")
+        private String expectedOutput;
+    }
+}
@@ -0,0 +1,43 @@
+package com.major.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchExecutionResponse {
+
+    private String batchId;
+    private int total;
+    private int passed;
+    private long totalTimeMs;
+    private List<CaseResult> results;
+
+    public enum Verdict {
+        PASSED,
+        WRONG_ANSWER,
+        RUNTIME_ERROR,
+        TIMEOUT,
+        REJECTED,
+        ERROR
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CaseResult {
+        private int index;
+        private String executionId;
+        private Verdict verdict;
+        private String stdout;
+        private String stderr;
+        private long timeMs;
+    }
+}
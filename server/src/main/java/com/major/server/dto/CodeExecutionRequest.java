@@ -11,4 +11,7 @@ public class CodeExecutionRequest {
     
     @NotBlank(message = "Language is required")
     private String language;
+
+    // Opt-in: the program always produces the same output, so its result may be cached
+    private boolean deterministic;
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.major.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.major.server.model.CodeExecution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExecutionStreamEvent {
+
+    public static final String STATUS = "status";
+    public static final String OUTPUT = "output";
+
+    private String type;
+    private String executionId;
+    private CodeExecution.ExecutionStatus status;
+    private String stream; // stdout or stderr, for output events
+    private String data;
+    private Integer exitCode;
+    private Boolean outputTruncated;
+
+    public static ExecutionStreamEvent status(String executionId, CodeExecution.ExecutionStatus status) {
+        return ExecutionStreamEvent.builder()
+                .type(STATUS)
+                .executionId(executionId)
+                .status(status)
+                .build();
+    }
+
+    public static ExecutionStreamEvent output(String executionId, String stream, String data) {
+        return ExecutionStreamEvent.builder()
+                .type(OUTPUT)
+                .executionId(executionId)
+                .stream(stream)
+                .data(data)
+                .build();
+    }
+}
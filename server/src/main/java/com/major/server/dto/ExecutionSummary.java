@@ -0,0 +1,49 @@
+package com.major.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.major.server.model.CodeExecution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An execution as listed in the history: everything but code, output and error,
+ * which are fetched per execution from GET /api/execute/{executionId}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExecutionSummary {
+
+    // Fields loaded for the history listing; keep in sync with from()
+    public static final String[] FIELDS = {
+            "language", "status", "executionTime", "outputTruncated", "batchId", "testCaseIndex", "executedAt"
+    };
+
+    private String id;
+    private String language;
+    private CodeExecution.ExecutionStatus status;
+    private Long executionTime;
+    private boolean outputTruncated;
+    private String batchId;
+    private Integer testCaseIndex;
+    private LocalDateTime executedAt;
+
+    public static ExecutionSummary from(CodeExecution execution) {
+        return ExecutionSummary.builder()
+                .id(execution.getId())
+                .language(execution.getLanguage())
+                .status(execution.getStatus())
+                .executionTime(execution.getExecutionTime())
+                .outputTruncated(execution.isOutputTruncated())
+                .batchId(execution.getBatchId())
+                .testCaseIndex(execution.getTestCaseIndex())
+                .executedAt(execution.getExecutedAt())
+                .build();
+    }
+}
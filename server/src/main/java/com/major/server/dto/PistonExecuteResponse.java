@@ -0,0 +1,19 @@
+package com.major.server.dto;
+
+/**
+ * Typed view of Piston's {@code POST /execute} response. Stage output fields are
+ * capped while decoding; {@code truncated} records whether anything was cut.
+ */
+public record PistonExecuteResponse(String language, String version, Stage compile, Stage run) {
+
+    public record Stage(String stdout, String stderr, Integer code, String signal, boolean truncated) {
+
+        public boolean isSuccessful() {
+            return code != null && code == 0;
+        }
+    }
+
+    public boolean isTruncated() {
+        return (compile != null && compile.truncated()) || (run != null && run.truncated());
+    }
+}
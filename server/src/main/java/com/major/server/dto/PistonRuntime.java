@@ -0,0 +1,17 @@
+package com.major.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * One entry of Piston's {@code GET /runtimes}; also used as a resolved
+ * (language, version) pair to send with an execution.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PistonRuntime(String language, String version, List<String> aliases, String runtime) {
+
+    public PistonRuntime(String language, String version) {
+        this(language, version, List.of(), null);
+    }
+}
@@ -0,0 +1,48 @@
+package com.major.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A snippet as listed in feeds, searches and profiles: no code, no starredBy or
+ * likedBy sets, just their counts and a short preview. Read straight from the
+ * snippets collection with a field projection; the full snippet comes from GET
+ * /api/snippets/{id}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnippetSummary {
+
+    // Stored fields loaded for listings; likeCount is projected separately
+    public static final String[] FIELDS = {
+            "title", "description", "language", "tags", "userId", "userName", "isPublic", "starCount", "viewCount",
+            "forkCount", "preview", "lineCount", "codeBytes", "createdAt", "updatedAt"
+    };
+
+    private String id;
+    private String title;
+    private String description;
+    private String language;
+    @Builder.Default
+    private Set<String> tags = new HashSet<>();
+    private String userId;
+    private String userName;
+    private boolean isPublic;
+    private int starCount;
+    private int likeCount;
+    private int viewCount;
+    private int forkCount;
+    private String preview;
+    private int lineCount;
+    private int codeBytes;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,35 @@
+package com.major.server.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Source code or program output stored once, keyed by the SHA-256 of its content.
+ * Execution records reference blobs by hash; {@code refCount} counts those references.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "code_blobs")
+public class CodeBlob {
+
+    @Id
+    private String id; // SHA-256 hex of content
+
+    private String content;
+
+    private int size; // in chars
+
+    @Indexed
+    private long refCount;
+
+    private LocalDateTime createdAt;
+}
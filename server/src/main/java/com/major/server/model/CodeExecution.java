@@ -7,6 +7,7 @@ import lombok.Builder;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 import jakarta.validation.constraints.NotBlank;
@@ -18,13 +19,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Document(collection = "code_executions")
+// Serves the keyset-paginated history: a user's executions, newest first, ties broken by _id
+@CompoundIndex(name = "user_history", def = "{'userId': 1, 'executedAt': -1, '_id': -1}")
 public class CodeExecution {
     
     @Id
     private String id;
     
     @NotBlank(message = "Code is required")
-    private String code;
+    private String code; // Not stored when codeHash is set; loaded from code_blobs on request
+    
+    private String codeHash;
     
     @NotBlank(message = "Language is required")
     @Indexed
@@ -32,7 +37,11 @@ public class CodeExecution {
     
     private String userId; // Optional, for logged-in users
     
-    private String output;
+    private String batchId; // Set for test cases run through the batch endpoint
+    private Integer testCaseIndex;
+    
+    private String output; // Not stored when outputHash is set
+    private String outputHash;
     private String error;
     
     @NotNull
@@ -48,6 +57,10 @@ public class CodeExecution {
     private String pistonVersion;
     private String pistonLanguage;
     
+    // Set when output or error was cut off at the configured size limit
+    @Builder.Default
+    private boolean outputTruncated = false;
+    
     @CreatedDate
     private LocalDateTime executedAt;
     
@@ -58,7 +71,8 @@ public class CodeExecution {
         SUCCESS,
         ERROR,
         TIMEOUT,
-        MEMORY_LIMIT_EXCEEDED
+        MEMORY_LIMIT_EXCEEDED,
+        REJECTED
     }
     
     // Helper methods
@@ -74,7 +88,8 @@ public class CodeExecution {
         return this.status == ExecutionStatus.SUCCESS || 
                this.status == ExecutionStatus.ERROR ||
                this.status == ExecutionStatus.TIMEOUT ||
-               this.status == ExecutionStatus.MEMORY_LIMIT_EXCEEDED;
+               this.status == ExecutionStatus.MEMORY_LIMIT_EXCEEDED ||
+               this.status == ExecutionStatus.REJECTED;
     }
     
     public void markAsSuccess(String output, Long executionTime, Long memoryUsage) {
@@ -89,6 +104,11 @@ public class CodeExecution {
         this.error = error;
     }
     
+    public void markAsRejected(String reason) {
+        this.status = ExecutionStatus.REJECTED;
+        this.error = reason;
+    }
+    
     public void markAsTimeout() {
         this.status = ExecutionStatus.TIMEOUT;
         this.error = "Code execution timed out";
@@ -0,0 +1,55 @@
+package com.major.server.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpointed execution counters for one language ({@code language:<name>}) or one
+ * user ({@code user:<id>}). Instances only ever {@code $inc} these documents with
+ * the counts gathered since their previous checkpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "execution_stats")
+public class ExecutionStatsRecord {
+
+    public static final String LANGUAGE = "language";
+    public static final String USER = "user";
+
+    @Id
+    private String id; // kind + ":" + key
+
+    @Indexed
+    private String kind;
+
+    private String key;
+
+    private long count;
+
+    private Map<String, Long> byStatus; // ExecutionStatus name -> count
+
+    private Map<String, Long> latencyBuckets; // LatencyHistogram bucket index -> count
+
+    private long latencySumMs;
+
+    private long latencyMaxMs;
+
+    private List<String> backfilled; // statuses already counted from code_executions by the backfill
+
+    private LocalDateTime updatedAt;
+
+    public static String id(String kind, String key) {
+        return kind + ":" + key;
+    }
+}
@@ -9,11 +9,14 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.index.TextIndexed;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Set;
 import java.util.HashSet;
@@ -23,6 +26,13 @@ import java.util.HashSet;
 @AllArgsConstructor
 @Builder
 @Document(collection = "snippets")
+// Feed orders; _id breaks ties for keyset pagination
+@CompoundIndexes({
+    @CompoundIndex(name = "public_newest", def = "{'isPublic': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "public_popular", def = "{'isPublic': 1, 'starCount': -1, '_id': -1}"),
+    @CompoundIndex(name = "public_language_newest", def = "{'isPublic': 1, 'language': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "public_tag_newest", def = "{'isPublic': 1, 'tags': 1, 'createdAt': -1, '_id': -1}")
+})
 public class Snippet {
     
     @Id
@@ -37,6 +47,11 @@ public class Snippet {
     @Size(max = 50000, message = "Code must be less than 50000 characters")
     private String code;
     
+    // Derived from code by refreshPreview() on every write, so listings never load the code
+    private String preview;
+    private int lineCount;
+    private int codeBytes;
+    
     @NotBlank(message = "Language is required")
     @Indexed
     private String language;
@@ -65,6 +80,9 @@ public class Snippet {
     @Builder.Default
     private Set<String> starredBy = new HashSet<>();
     
+    // Kept equal to starredBy.size() by the same atomic update that changes starredBy
+    private int starCount;
+    
     @Builder.Default
     private Set<String> likedBy = new HashSet<>();
     
@@ -83,20 +101,20 @@ public class Snippet {
     private LocalDateTime updatedAt;
     
     // Helper methods
-    public int getStarCount() {
-        return starredBy.size();
-    }
-    
     public int getLikeCount() {
         return likedBy.size();
     }
     
     public void starBy(String userId) {
-        this.starredBy.add(userId);
+        if (this.starredBy.add(userId)) {
+            this.starCount++;
+        }
     }
     
     public void unstarBy(String userId) {
-        this.starredBy.remove(userId);
+        if (this.starredBy.remove(userId)) {
+            this.starCount--;
+        }
     }
     
     public boolean isStarredBy(String userId) {
@@ -131,6 +149,27 @@ public class Snippet {
         this.forkCount++;
     }
     
+    /**
+     * Recomputes preview, lineCount and codeBytes from code. The preview is the
+     * first {@code maxLines} lines, cut at {@code maxChars} characters.
+     */
+    public void refreshPreview(int maxLines, int maxChars) {
+        String source = code != null ? code : "";
+        this.codeBytes = source.getBytes(StandardCharsets.UTF_8).length;
+        this.lineCount = (int) source.lines().count();
+        
+        int end = 0;
+        for (int line = 0; line < maxLines && end < source.length(); line++) {
+            int newline = source.indexOf('\n', end);
+            end = newline < 0 ? source.length() : newline + 1;
+        }
+        end = Math.min(end, maxChars);
+        if (end > 0 && end < source.length() && Character.isHighSurrogate(source.charAt(end - 1))) {
+            end--;
+        }
+        this.preview = source.substring(0, end).stripTrailing();
+    }
+    
     public void addTag(String tag) {
         this.tags.add(tag.toLowerCase());
     }
@@ -0,0 +1,10 @@
+package com.major.server.model;
+
+/**
+ * Service level of a caller, used to size rate limits and scheduling shares.
+ */
+public enum UserTier {
+    ANONYMOUS,
+    AUTHENTICATED,
+    PRO
+}
@@ -13,8 +13,7 @@ import java.util.List;
 @Repository
 public interface CodeExecutionRepository extends MongoRepository<CodeExecution, String> {
     
-    // Find executions by user
-    List<CodeExecution> findByUserId(String userId);
+    // Find executions by user; the history endpoint pages through them by keyset instead
     Page<CodeExecution> findByUserId(String userId, Pageable pageable);
     
     // Find executions by language
@@ -57,10 +56,6 @@ public interface CodeExecutionRepository extends MongoRepository<CodeExecution,
     @Query(value = "{ 'executedAt': { $gte: ?0, $lte: ?1 } }", count = true)
     long countExecutionsBetweenDates(LocalDateTime start, LocalDateTime end);
     
-    // Aggregation for average execution time by language
-    @Query("{ 'language': ?0 }")
-    List<CodeExecution> findExecutionsByLanguageForStats(String language);
-    
     // Clean up old executions (older than specified date)
     void deleteByExecutedAtBefore(LocalDateTime date);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.major.server.repository;
+
+import com.major.server.model.CodeExecution;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Non-blocking access to code_executions, used on the execution path so that no
+ * Reactor thread ever waits on Mongo I/O.
+ */
+@Repository
+public interface ReactiveCodeExecutionRepository extends ReactiveMongoRepository<CodeExecution, String> {
+}
@@ -0,0 +1,97 @@
+package com.major.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIMD concurrency limit for Piston calls. The limit grows by roughly one slot
+ * per limit-worth of fast calls and is cut multiplicatively whenever a call is
+ * slower than the latency threshold or fails.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${app.piston.limiter.initial-limit:20}") int initialLimit,
+            @Value("${app.piston.limiter.min-limit:2}") int minLimit,
+            @Value("${app.piston.limiter.max-limit:200}") int maxLimit,
+            @Value("${app.piston.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${app.piston.limiter.latency-threshold-ms:5000}") long latencyThresholdMs) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public boolean tryAcquire() {
+        int currentLimit = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot taken by {@link #tryAcquire()} for a call that completed.
+     */
+    public void onSuccess(long latencyNanos) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * Releases a slot for a call that failed upstream or timed out.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+    }
+
+    /**
+     * Releases a slot without adjusting the limit, e.g. when the caller cancelled.
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "limit", getLimit(),
+                "inFlight", inFlight.get(),
+                "rejected", rejected.sum()
+        );
+    }
+}
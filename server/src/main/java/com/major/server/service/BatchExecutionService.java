@@ -0,0 +1,160 @@
+package com.major.server.service;
+
+import com.major.server.dto.BatchExecutionRequest;
+import com.major.server.dto.BatchExecutionResponse;
+import com.major.server.dto.PistonRuntime;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Judges one program against many stdin/expected-output pairs. Test cases run
+ * against Piston with bounded parallelism and all of their execution records are
+ * persisted in a single bulk insert.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchExecutionService {
+
+    private final CodeExecutionService codeExecutionService;
+    private final CodeExecutionStore codeExecutionStore;
+
+    @Value("${app.execution.batch.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * Each test case is a separate run in the lane of {@code tier}.
+     */
+    public Mono<BatchExecutionResponse> judge(BatchExecutionRequest request, String userId, UserTier tier) {
+        return Mono.defer(() -> judge(request, userId, tier, codeExecutionService.resolveRuntime(request.getLanguage())));
+    }
+
+    private Mono<BatchExecutionResponse> judge(BatchExecutionRequest request, String userId, UserTier tier,
+                                               PistonRuntime runtime) {
+        String batchId = UUID.randomUUID().toString();
+        List<BatchExecutionRequest.TestCase> testCases = request.getTestCases();
+        long start = System.nanoTime();
+
+        return Flux.range(0, testCases.size())
+                .flatMapSequential(index -> runCase(request, runtime, batchId, index, userId, tier), parallelism)
+                .collectList()
+                // All new documents, so this is one insertMany round trip (or buffered)
+                .flatMap(cases -> codeExecutionStore
+                        .completeAll(cases.stream().map(JudgedCase::execution).toList())
+                        .then(Mono.just(cases)))
+                .map(cases -> {
+                    List<BatchExecutionResponse.CaseResult> results = cases.stream()
+                            .map(JudgedCase::toResult)
+                            .toList();
+                    int passed = (int) results.stream()
+                            .filter(result -> result.getVerdict() == BatchExecutionResponse.Verdict.PASSED)
+                            .count();
+
+                    return BatchExecutionResponse.builder()
+                            .batchId(batchId)
+                            .total(results.size())
+                            .passed(passed)
+                            .totalTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                            .results(results)
+                            .build();
+                });
+    }
+
+    private Mono<JudgedCase> runCase(BatchExecutionRequest request, PistonRuntime runtime, String batchId,
+                                     int index, String userId, UserTier tier) {
+        BatchExecutionRequest.TestCase testCase = request.getTestCases().get(index);
+        CodeExecution execution = CodeExecution.builder()
+                .code(request.getCode())
+                .language(request.getLanguage())
+                .userId(userId)
+                .batchId(batchId)
+                .testCaseIndex(index)
+                .status(CodeExecution.ExecutionStatus.RUNNING)
+                .executedAt(LocalDateTime.now())
+                .build();
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return codeExecutionService.runProgram(runtime, request.getCode(), testCase.getStdin(), tier)
+                    .map(response -> {
+                        codeExecutionService.updateExecutionWithResponse(execution, response);
+                        return verdictFor(execution, testCase);
+                    })
+                    .switchIfEmpty(Mono.error(new IllegalStateException("Empty response from Piston")))
+                    .onErrorResume(error -> Mono.just(verdictForError(execution, error)))
+                    .map(verdict -> {
+                        execution.setExecutionTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        return new JudgedCase(index, execution, verdict);
+                    });
+        });
+    }
+
+    private BatchExecutionResponse.Verdict verdictFor(CodeExecution execution, BatchExecutionRequest.TestCase testCase) {
+        if (execution.getStatus() != CodeExecution.ExecutionStatus.SUCCESS) {
+            return BatchExecutionResponse.Verdict.RUNTIME_ERROR;
+        }
+        return normalize(execution.getOutput()).equals(normalize(testCase.getExpectedOutput()))
+                ? BatchExecutionResponse.Verdict.PASSED
+                : BatchExecutionResponse.Verdict.WRONG_ANSWER;
+    }
+
+    private BatchExecutionResponse.Verdict verdictForError(CodeExecution execution, Throwable error) {
+        if (error instanceof ExecutionRejectedException) {
+            execution.markAsRejected(error.getMessage());
+            return BatchExecutionResponse.Verdict.REJECTED;
+        }
+        if (error.getCause() instanceof TimeoutException) {
+            execution.markAsTimeout();
+            return BatchExecutionResponse.Verdict.TIMEOUT;
+        }
+        log.error("Error running test case {} of batch {}", execution.getTestCaseIndex(), execution.getBatchId(), error);
+        execution.markAsError("Error executing code: " + error.getMessage());
+        return BatchExecutionResponse.Verdict.ERROR;
+    }
+
+    /**
+     * Compares outputs the way most judges do: line endings and trailing whitespace
+     * on each line, and trailing blank lines, are ignored.
+     */
+    static String normalize(String output) {
+        if (output == null) {
+            return "";
+        }
+        String[] lines = output.replace("\r\n", "\n").split("\n", -1);
+        StringBuilder normalized = new StringBuilder(output.length());
+        for (String line : lines) {
+            normalized.append(line.stripTrailing()).append('\n');
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '\n') {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    private record JudgedCase(int index, CodeExecution execution, BatchExecutionResponse.Verdict verdict) {
+
+        BatchExecutionResponse.CaseResult toResult() {
+            return BatchExecutionResponse.CaseResult.builder()
+                    .index(index)
+                    .executionId(execution.getId())
+                    .verdict(verdict)
+                    .stdout(execution.getOutput())
+                    .stderr(execution.getError())
+                    .timeMs(execution.getExecutionTime())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.major.server.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for Piston. Opens when the failure rate over the last
+ * {@code windowSize} calls exceeds the threshold, fails fast while open, and
+ * lets a few trial calls through in half-open state to decide whether to close.
+ */
+@Slf4j
+@Component
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    // Ring buffer of recent outcomes, true meaning failure
+    private final boolean[] outcomes;
+    private int outcomeIndex;
+    private int recordedCalls;
+    private int failuresInWindow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermitted;
+    private int halfOpenSucceeded;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreaker(
+            @Value("${app.piston.circuit-breaker.window-size:50}") int windowSize,
+            @Value("${app.piston.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${app.piston.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${app.piston.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+            @Value("${app.piston.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenCalls = halfOpenCalls;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                rejected.increment();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermitted >= halfOpenCalls) {
+                rejected.increment();
+                return false;
+            }
+            halfOpenPermitted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onError() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recordedCalls >= minimumCalls
+                && (double) failuresInWindow / recordedCalls >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Returns a permission that was granted but never used, e.g. after cancellation.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermitted > 0) {
+            halfOpenPermitted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        return Map.of(
+                "state", state,
+                "recordedCalls", recordedCalls,
+                "failureRate", recordedCalls == 0 ? 0.0 : (double) failuresInWindow / recordedCalls,
+                "rejected", rejected.sum()
+        );
+    }
+
+    private void record(boolean failure) {
+        if (recordedCalls == windowSize) {
+            if (outcomes[outcomeIndex]) {
+                failuresInWindow--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        outcomes[outcomeIndex] = failure;
+        if (failure) {
+            failuresInWindow++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % windowSize;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            log.warn("Piston circuit breaker {} -> {}", state, newState);
+        }
+        state = newState;
+        halfOpenPermitted = 0;
+        halfOpenSucceeded = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        if (newState == State.CLOSED) {
+            outcomeIndex = 0;
+            recordedCalls = 0;
+            failuresInWindow = 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Deduplicated, content-addressed storage for code and large outputs. Storing
+ * content that already exists only bumps its reference count; blobs whose count
+ * drops to zero are removed by a periodic sweep.
+ */
+@Slf4j
+@Component
+public class CodeBlobStore {
+
+    // Rough per-entry overhead for the key and the map node
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    // Blobs are immutable, so cached bodies never go stale
+    private final WeightedLruCache<String, String> contentCache;
+
+    public CodeBlobStore(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${app.execution.blobs.cache-bytes:16777216}") long cacheBytes) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.contentCache = new WeightedLruCache<>(Long.MAX_VALUE, cacheBytes, 0,
+                content -> ENTRY_OVERHEAD_BYTES + 2L * content.length());
+    }
+
+    /**
+     * Adds a reference to {@code content}, inserting it if it is new.
+     *
+     * @return the content hash to store in place of the content
+     */
+    public Mono<String> store(String content) {
+        return Mono.defer(() -> {
+            String hash = ContentHash.sha256Hex(content);
+            Update update = new Update()
+                    .setOnInsert("content", content)
+                    .setOnInsert("size", content.length())
+                    .setOnInsert("createdAt", LocalDateTime.now())
+                    .inc("refCount", 1);
+            return reactiveMongoTemplate.upsert(byHash(hash), update, CodeBlob.class)
+                    .doOnSuccess(result -> contentCache.put(hash, content))
+                    .thenReturn(hash);
+        });
+    }
+
+    public Mono<String> load(String hash) {
+        return Mono.defer(() -> {
+            String cached = contentCache.get(hash);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return reactiveMongoTemplate.findById(hash, CodeBlob.class)
+                    .map(CodeBlob::getContent)
+                    .doOnNext(content -> contentCache.put(hash, content));
+        });
+    }
+
+    /**
+     * Drops one reference to a blob; it is deleted by the next sweep once unreferenced.
+     */
+    public Mono<Void> release(String hash) {
+        return reactiveMongoTemplate.updateFirst(byHash(hash), new Update().inc("refCount", -1), CodeBlob.class)
+                .then();
+    }
+
+    /**
+     * Deletes unreferenced blobs. A concurrent {@link #store} either lands before the
+     * delete, raising the count above zero, or re-creates the blob with its upsert.
+     */
+    @Scheduled(fixedDelayString = "${app.execution.blobs.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        reactiveMongoTemplate.remove(Query.query(Criteria.where("refCount").lte(0)), CodeBlob.class)
+                .subscribe(
+                        result -> {
+                            if (result.getDeletedCount() > 0) {
+                                log.info("Removed {} unreferenced code blobs", result.getDeletedCount());
+                            }
+                        },
+                        error -> log.error("Code blob garbage collection failed", error));
+    }
+
+    public Map<String, Object> stats() {
+        return contentCache.stats();
+    }
+
+    private static Query byHash(String hash) {
+        return Query.query(Criteria.where("_id").is(hash));
+    }
+}
@@ -1,154 +1,267 @@
 package com.major.server.service;
 
 import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.dto.CursorPage;
+import com.major.server.dto.ExecutionSummary;
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
 import com.major.server.model.CodeExecution;
-import com.major.server.repository.CodeExecutionRepository;
+import com.major.server.model.UserTier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CodeExecutionService {
 
-    private final CodeExecutionRepository codeExecutionRepository;
-    private final WebClient.Builder webClientBuilder;
+    private final CodeExecutionStore codeExecutionStore;
+    private final CodeBlobStore codeBlobStore;
+    // Ordered by @Order; the Piston backend comes last and supports every runtime
+    private final List<ExecutionBackend> executionBackends;
+    private final ExecutionResultCache resultCache;
+    private final InFlightExecutions inFlightExecutions;
+    private final PistonRuntimeRegistry pistonRuntimeRegistry;
+    private final ExecutionStatsService executionStatsService;
+    private final ExecutionLaneScheduler executionLaneScheduler;
 
-    @Value("${app.piston.api.url}")
-    private String pistonApiUrl;
+    @Value("${app.execution.history.max-limit:100}")
+    private int maxHistoryLimit;
 
-    @Value("${app.piston.api.timeout:10000}")
-    private int timeoutMs;
+    /**
+     * Runs code in the lane of {@code tier} and records the execution. Fails with
+     * {@link UnsupportedLanguageException}, before anything is stored or sent, when
+     * the language has no Piston runtime.
+     */
+    public Mono<CodeExecution> executeCode(CodeExecutionRequest request, String userId, UserTier tier) {
+        return Mono.defer(() -> {
+            PistonRuntime runtime = resolveRuntime(request.getLanguage());
+            ExecutionKey key = executionKey(runtime, request);
+            CodeExecution execution = newExecution(request, userId);
 
-    public Mono<CodeExecution> executeCode(CodeExecutionRequest request, String userId) {
-        CodeExecution execution = CodeExecution.builder()
-                .code(request.getCode())
-                .language(request.getLanguage())
-                .userId(userId)
-                .status(CodeExecution.ExecutionStatus.PENDING)
-                .executedAt(LocalDateTime.now())
-                .build();
+            // Deterministic programs that ran recently are answered from the cache
+            if (applyCachedResult(key, request, execution)) {
+                return codeExecutionStore.complete(execution);
+            }
+
+            // Save initial execution record
+            return codeExecutionStore.create(execution)
+                    .flatMap(savedExecution -> runOnPiston(runtime, key, request, savedExecution, tier));
+        });
+    }
+
+    /**
+     * Persists a PENDING execution so that its id can be handed out before it runs.
+     * Unsupported languages are rejected instead.
+     */
+    public Mono<CodeExecution> createPendingExecution(CodeExecutionRequest request, String userId) {
+        return Mono.defer(() -> {
+            resolveRuntime(request.getLanguage());
+            return codeExecutionStore.create(newExecution(request, userId));
+        });
+    }
 
-        // Save initial execution record
-        execution = codeExecutionRepository.save(execution);
-        final CodeExecution savedExecution = execution;
+    /**
+     * Runs an execution previously created with {@link #createPendingExecution}.
+     */
+    public Mono<CodeExecution> runExecution(CodeExecution execution, CodeExecutionRequest request, UserTier tier) {
+        return Mono.defer(() -> {
+            PistonRuntime runtime = resolveRuntime(request.getLanguage());
+            ExecutionKey key = executionKey(runtime, request);
+            if (applyCachedResult(key, request, execution)) {
+                return codeExecutionStore.complete(execution);
+            }
+            return runOnPiston(runtime, key, request, execution, tier);
+        });
+    }
+
+    /**
+     * @throws UnsupportedLanguageException when no Piston runtime serves {@code language}
+     */
+    PistonRuntime resolveRuntime(String language) {
+        return pistonRuntimeRegistry.resolve(language);
+    }
 
-        return callPistonApi(request)
+    private Mono<CodeExecution> runOnPiston(PistonRuntime runtime, ExecutionKey key, CodeExecutionRequest request,
+                                            CodeExecution savedExecution, UserTier tier) {
+        long start = System.nanoTime();
+        // Each request waits in its own lane; once admitted, identical requests that are
+        // already running share the pending backend call
+        return executionLaneScheduler.schedule(tier, () -> inFlightExecutions.execute(key,
+                        () -> backendFor(runtime).execute(runtime, request.getCode(), null)))
                 .map(response -> {
-                    updateExecutionWithResponse(savedExecution, response);
-                    return codeExecutionRepository.save(savedExecution);
+                    savedExecution.setExecutionTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    boolean completed = updateExecutionWithResponse(savedExecution, response);
+                    if (completed && request.isDeterministic()) {
+                        resultCache.put(key, savedExecution);
+                    }
+                    return savedExecution;
+                })
+                .onErrorResume(ExecutionRejectedException.class, error -> {
+                    log.warn("Execution {} rejected: {}", savedExecution.getId(), error.getMessage());
+                    savedExecution.markAsRejected(error.getMessage());
+                    return Mono.just(savedExecution);
                 })
                 .onErrorResume(error -> {
                     log.error("Error executing code: ", error);
                     savedExecution.markAsError("Error executing code: " + error.getMessage());
-                    return Mono.just(codeExecutionRepository.save(savedExecution));
-                });
+                    return Mono.just(savedExecution);
+                })
+                .flatMap(codeExecutionStore::complete);
+    }
+
+    private boolean applyCachedResult(ExecutionKey key, CodeExecutionRequest request, CodeExecution execution) {
+        if (!request.isDeterministic()) {
+            return false;
+        }
+        Optional<ExecutionResultCache.CachedResult> cached = resultCache.get(key);
+        cached.ifPresent(result -> result.applyTo(execution));
+        return cached.isPresent();
     }
 
-    private Mono<Map<String, Object>> callPistonApi(CodeExecutionRequest request) {
-        WebClient webClient = webClientBuilder
-                .baseUrl(pistonApiUrl)
+    private ExecutionKey executionKey(PistonRuntime runtime, CodeExecutionRequest request) {
+        return ExecutionKey.of(runtime.language(), runtime.version(), request.getCode());
+    }
+
+    private CodeExecution newExecution(CodeExecutionRequest request, String userId) {
+        return CodeExecution.builder()
+                .code(request.getCode())
+                .language(request.getLanguage())
+                .userId(userId)
+                .status(CodeExecution.ExecutionStatus.PENDING)
+                .executedAt(LocalDateTime.now())
                 .build();
+    }
+
+    /**
+     * Runs a program on the first backend that supports its runtime, once the lane
+     * of {@code tier} has a free slot.
+     */
+    Mono<PistonExecuteResponse> runProgram(PistonRuntime runtime, String code, String stdin, UserTier tier) {
+        return executionLaneScheduler.schedule(tier, () -> backendFor(runtime).execute(runtime, code, stdin));
+    }
 
-        Map<String, Object> pistonRequest = Map.of(
-                "language", mapLanguageToPiston(request.getLanguage()),
-                "version", "*", // Use latest version
-                "files", List.of(Map.of(
-                        "content", request.getCode()
-                ))
-        );
-
-        return webClient
-                .post()
-                .uri("/execute")
-                .bodyValue(pistonRequest)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(rawMap -> (Map<String, Object>) rawMap)
-                .timeout(java.time.Duration.ofMillis(timeoutMs))
-                .onErrorMap(WebClientResponseException.class, ex -> 
-                    new RuntimeException("Piston API error: " + ex.getResponseBodyAsString(), ex))
-                .onErrorMap(java.util.concurrent.TimeoutException.class, ex ->
-                    new RuntimeException("Code execution timed out", ex));
-    }
-
-    private void updateExecutionWithResponse(CodeExecution execution, Map<String, Object> response) {
-        try {
-            Map<String, Object> run = (Map<String, Object>) response.get("run");
-            
-            if (run != null) {
-                String stdout = (String) run.get("stdout");
-                String stderr = (String) run.get("stderr");
-                Integer code = (Integer) run.get("code");
-
-                execution.setOutput(stdout != null ? stdout : "");
-                execution.setError(stderr != null ? stderr : "");
-
-                if (code != null && code == 0) {
-                    execution.setStatus(CodeExecution.ExecutionStatus.SUCCESS);
-                } else {
-                    execution.setStatus(CodeExecution.ExecutionStatus.ERROR);
-                }
+    private ExecutionBackend backendFor(PistonRuntime runtime) {
+        for (ExecutionBackend backend : executionBackends) {
+            if (backend.supports(runtime)) {
+                return backend;
             }
+        }
+        throw new UnsupportedLanguageException(runtime.language());
+    }
 
-            // Extract Piston metadata
-            String language = (String) response.get("language");
-            String version = (String) response.get("version");
-            
-            execution.setPistonLanguage(language);
-            execution.setPistonVersion(version);
+    /**
+     * Copies the Piston result onto the execution.
+     *
+     * @return true when the program actually ran and its outcome was recorded
+     */
+    boolean updateExecutionWithResponse(CodeExecution execution, PistonExecuteResponse response) {
+        execution.setPistonLanguage(response.language());
+        execution.setPistonVersion(response.version());
+        execution.setOutputTruncated(response.isTruncated());
 
-        } catch (Exception e) {
-            log.error("Error parsing Piston response", e);
+        // A failed compile stage means the run stage never happened
+        PistonExecuteResponse.Stage compile = response.compile();
+        if (compile != null && !compile.isSuccessful()) {
+            execution.setOutput(orEmpty(compile.stdout()));
+            execution.setError(orEmpty(compile.stderr()));
+            execution.setStatus(CodeExecution.ExecutionStatus.ERROR);
+            return true;
+        }
+
+        PistonExecuteResponse.Stage run = response.run();
+        if (run == null) {
+            log.error("Piston response for execution {} has no run stage", execution.getId());
             execution.markAsError("Error parsing execution response");
+            return false;
         }
+
+        execution.setOutput(orEmpty(run.stdout()));
+        execution.setError(orEmpty(run.stderr()));
+        execution.setStatus(run.isSuccessful()
+                ? CodeExecution.ExecutionStatus.SUCCESS
+                : CodeExecution.ExecutionStatus.ERROR);
+        return true;
     }
 
-    private String mapLanguageToPiston(String language) {
-        return switch (language.toLowerCase()) {
-            case "javascript", "js" -> "javascript";
-            case "typescript", "ts" -> "typescript";
-            case "python", "py" -> "python";
-            case "java" -> "java";
-            case "cpp", "c++" -> "cpp";
-            case "c" -> "c";
-            case "csharp", "c#" -> "csharp";
-            case "go" -> "go";
-            case "rust" -> "rust";
-            case "php" -> "php";
-            case "ruby" -> "ruby";
-            case "swift" -> "swift";
-            case "kotlin" -> "kotlin";
-            case "scala" -> "scala";
-            case "bash", "sh" -> "bash";
-            default -> language.toLowerCase();
-        };
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
     }
 
-    public List<CodeExecution> getExecutionHistory(String userId) {
-        return codeExecutionRepository.findByUserId(userId);
+    /**
+     * One page of a user's executions, newest first, without code or output.
+     *
+     * @param cursor {@code nextCursor} of the previous page, or null for the first page
+     * @throws IllegalArgumentException when {@code cursor} is malformed
+     */
+    public Mono<CursorPage<ExecutionSummary>> getExecutionHistory(String userId, String cursor, int limit) {
+        return Mono.defer(() -> {
+            KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor) : null;
+            int pageSize = Math.max(1, Math.min(limit, maxHistoryLimit));
+            // One extra row tells whether there is a next page
+            return codeExecutionStore.findHistory(userId, after, pageSize + 1)
+                    .collectList()
+                    .map(executions -> {
+                        boolean hasMore = executions.size() > pageSize;
+                        List<CodeExecution> page = hasMore ? executions.subList(0, pageSize) : executions;
+                        String nextCursor = hasMore ? KeysetCursor.after(page.get(pageSize - 1)).encode() : null;
+                        return new CursorPage<>(page.stream().map(ExecutionSummary::from).toList(), nextCursor, hasMore);
+                    });
+        });
     }
 
-    public CodeExecution getExecution(String executionId) {
-        return codeExecutionRepository.findById(executionId)
-                .orElseThrow(() -> new RuntimeException("Execution not found"));
+    /**
+     * Loads an execution with its output. Code is stored separately and only
+     * loaded when {@code includeCode} is set.
+     */
+    public Mono<CodeExecution> getExecution(String executionId, boolean includeCode) {
+        return codeExecutionStore.findById(executionId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Execution not found")))
+                .flatMap(execution -> withBodies(execution, includeCode));
     }
 
-    // Statistics methods
+    private Mono<CodeExecution> withBodies(CodeExecution execution, boolean includeCode) {
+        Mono<String> output = execution.getOutput() == null && execution.getOutputHash() != null
+                ? codeBlobStore.load(execution.getOutputHash()).doOnNext(execution::setOutput)
+                : Mono.empty();
+        Mono<String> code = includeCode && execution.getCode() == null && execution.getCodeHash() != null
+                ? codeBlobStore.load(execution.getCodeHash()).doOnNext(execution::setCode)
+                : Mono.empty();
+        return Mono.when(output, code).thenReturn(execution);
+    }
+
+    // Statistics methods, answered from the in-memory stats rather than code_executions
     public long getExecutionCountByLanguage(String language) {
-        return codeExecutionRepository.countByLanguage(language);
+        return executionStatsService.languageCount(language);
     }
 
-    public long getUserExecutionCount(String userId) {
-        return codeExecutionRepository.countByUserId(userId);
+    public Mono<Long> getUserExecutionCount(String userId) {
+        return executionStatsService.userCount(userId);
+    }
+
+    public Map<String, Object> getExecutionMetrics() {
+        Map<String, Object> backends = new LinkedHashMap<>();
+        executionBackends.forEach(backend -> backends.put(backend.name(), backend.stats()));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("resultCache", resultCache.stats());
+        metrics.put("coalescing", inFlightExecutions.stats());
+        metrics.put("backends", backends);
+        metrics.put("store", codeExecutionStore.stats());
+        metrics.put("blobCache", codeBlobStore.stats());
+        metrics.put("runtimes", pistonRuntimeRegistry.stats());
+        metrics.put("stats", executionStatsService.stats());
+        metrics.put("lanes", executionLaneScheduler.stats());
+        return metrics;
     }
-}
\ No newline at end of file
+}
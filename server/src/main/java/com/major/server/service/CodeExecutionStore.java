@@ -0,0 +1,325 @@
+package com.major.server.service;
+
+import com.major.server.dto.ExecutionSummary;
+import com.major.server.model.CodeExecution;
+import com.major.server.repository.ReactiveCodeExecutionRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Persistence for execution records on the execution path.
+ * <p>
+ * With write-behind enabled, the PENDING record and every intermediate state only
+ * live in memory: ids are assigned client-side, lookups are answered from the
+ * in-memory copy, and the finished record is written once, in an unordered bulk
+ * insert together with other finished executions. Buffers are flushed when
+ * {@code batch-size} records are waiting, every {@code flush-interval-ms}, and on
+ * shutdown. At most {@code max-buffered} records are held in memory; beyond that,
+ * for instance while Mongo is unreachable, new executions are written directly
+ * again. Records of executions that are still running when the process dies
+ * are lost, which is why this is off by default.
+ */
+@Slf4j
+@Component
+public class CodeExecutionStore {
+
+    // Mongo's duplicate key error; a retried flush may re-insert records that made it the first time
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ReactiveCodeExecutionRepository reactiveCodeExecutionRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final CodeBlobStore codeBlobStore;
+    private final ExecutionStatsService executionStatsService;
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final int maxBuffered;
+    private final Duration shutdownTimeout;
+    private final int retentionDays;
+
+    // Executions that exist only in memory, by id, until their final state is written
+    private final Map<String, CodeExecution> unwritten = new ConcurrentHashMap<>();
+    private final Queue<CodeExecution> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder documentsWritten = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder bufferFull = new LongAdder();
+
+    public CodeExecutionStore(
+            ReactiveCodeExecutionRepository reactiveCodeExecutionRepository,
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            CodeBlobStore codeBlobStore,
+            ExecutionStatsService executionStatsService,
+            @Value("${app.execution.write-behind.enabled:false}") boolean writeBehind,
+            @Value("${app.execution.write-behind.batch-size:500}") int batchSize,
+            @Value("${app.execution.write-behind.max-buffered:10000}") int maxBuffered,
+            @Value("${app.execution.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+            @Value("${app.execution.retention-days:0}") int retentionDays) {
+        this.reactiveCodeExecutionRepository = reactiveCodeExecutionRepository;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.codeBlobStore = codeBlobStore;
+        this.executionStatsService = executionStatsService;
+        this.writeBehind = writeBehind;
+        this.batchSize = batchSize;
+        this.maxBuffered = maxBuffered;
+        this.shutdownTimeout = Duration.ofMillis(shutdownTimeoutMs);
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Records a new execution that has not finished yet.
+     */
+    public Mono<CodeExecution> create(CodeExecution execution) {
+        if (!writeBehind || isBufferFull()) {
+            return reactiveCodeExecutionRepository.save(execution);
+        }
+        execution.setId(new ObjectId().toHexString());
+        unwritten.put(execution.getId(), execution);
+        return Mono.just(execution);
+    }
+
+    /**
+     * Records the final state of an execution and counts it in the execution stats.
+     */
+    public Mono<CodeExecution> complete(CodeExecution execution) {
+        executionStatsService.record(execution);
+        if (!writeBehind) {
+            return reactiveCodeExecutionRepository.save(execution);
+        }
+        if (execution.getId() == null) {
+            if (isBufferFull()) {
+                return reactiveCodeExecutionRepository.save(execution);
+            }
+            execution.setId(new ObjectId().toHexString());
+            unwritten.put(execution.getId(), execution);
+        } else if (!unwritten.containsKey(execution.getId())) {
+            // Created before write-behind was in effect, so the document already exists
+            return reactiveCodeExecutionRepository.save(execution);
+        }
+        enqueue(execution);
+        return Mono.just(execution);
+    }
+
+    /**
+     * Records finished executions that were never stored as PENDING.
+     */
+    public Flux<CodeExecution> completeAll(List<CodeExecution> executions) {
+        if (!writeBehind) {
+            executions.forEach(executionStatsService::record);
+            return reactiveCodeExecutionRepository.saveAll(executions);
+        }
+        return Flux.fromIterable(executions).concatMap(this::complete);
+    }
+
+    public Mono<CodeExecution> findById(String executionId) {
+        CodeExecution buffered = unwritten.get(executionId);
+        if (buffered != null) {
+            return Mono.just(buffered);
+        }
+        return reactiveCodeExecutionRepository.findById(executionId);
+    }
+
+    /**
+     * Up to {@code limit} of a user's executions older than {@code after} (or the
+     * newest ones when it is null), newest first, with only the summary fields
+     * loaded. Executions still buffered by write-behind are not listed yet.
+     */
+    public Flux<CodeExecution> findHistory(String userId, KeysetCursor after, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (after != null) {
+            // The executedAt bound keeps the scan on the index; the $or only breaks ties
+            LocalDateTime executedAt = after.keyAsDateTime();
+            criteria = criteria.and("executedAt").lte(executedAt).orOperator(
+                    Criteria.where("executedAt").lt(executedAt),
+                    Criteria.where("id").lt(after.id()));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "executedAt", "id"))
+                .limit(limit);
+        query.fields().include(ExecutionSummary.FIELDS);
+        return reactiveMongoTemplate.find(query, CodeExecution.class);
+    }
+
+    @Scheduled(fixedDelayString = "${app.execution.write-behind.flush-interval-ms:500}")
+    public void flushScheduled() {
+        if (writeBehind) {
+            flush(true).subscribe();
+        }
+    }
+
+    /**
+     * Deletes executions older than {@code app.execution.retention-days} and releases
+     * their code and output blobs. Disabled when retention is 0.
+     */
+    @Scheduled(fixedDelayString = "${app.execution.retention.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        Query expired = Query.query(Criteria.where("executedAt").lt(LocalDateTime.now().minusDays(retentionDays)));
+        expired.fields().include("codeHash", "outputHash");
+        reactiveMongoTemplate.findAllAndRemove(expired, CodeExecution.class)
+                .flatMap(execution -> Flux.fromStream(Stream.of(execution.getCodeHash(), execution.getOutputHash())
+                                .filter(Objects::nonNull))
+                        .concatMap(codeBlobStore::release))
+                .subscribe(null, error -> log.error("Failed to purge expired executions", error));
+    }
+
+    @PreDestroy
+    public void drain() throws InterruptedException {
+        if (!writeBehind) {
+            return;
+        }
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        while (completedCount.get() > 0 && System.nanoTime() < deadline) {
+            flush(true).block(Duration.ofNanos(Math.max(deadline - System.nanoTime(), 0)));
+            if (completedCount.get() > 0) {
+                // A scheduled flush is still running, or the last write failed
+                Thread.sleep(50);
+            }
+        }
+        if (!unwritten.isEmpty()) {
+            log.warn("{} executions were not persisted at shutdown", unwritten.size());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long executions = documentsWritten.sum();
+        return Map.of(
+                "writeBehind", writeBehind,
+                "unwritten", unwritten.size(),
+                "maxBuffered", maxBuffered,
+                "bufferFull", bufferFull.sum(),
+                "awaitingFlush", completedCount.get(),
+                "flushes", flushes.sum(),
+                "flushFailures", flushFailures.sum(),
+                "documentsWritten", executions,
+                "writesPerExecution", executions == 0 ? 0.0 : (double) flushes.sum() / executions
+        );
+    }
+
+    /**
+     * Every record waiting to be flushed is also in {@code unwritten}, so this
+     * bounds both, including batches put back after a failed flush.
+     */
+    private boolean isBufferFull() {
+        if (unwritten.size() < maxBuffered) {
+            return false;
+        }
+        bufferFull.increment();
+        return true;
+    }
+
+    private void enqueue(CodeExecution execution) {
+        completed.add(execution);
+        if (completedCount.incrementAndGet() >= batchSize) {
+            flush(false).subscribe();
+        }
+    }
+
+    /**
+     * Writes buffered executions in batches of at most {@code batchSize}. Only one
+     * flush runs at a time; a flush that finds another in progress does nothing.
+     *
+     * @param all also write a final partial batch
+     */
+    Mono<Void> flush(boolean all) {
+        return Mono.defer(() -> {
+            if (!flushing.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            return writeBatches(all).doFinally(signal -> flushing.set(false));
+        });
+    }
+
+    private Mono<Void> writeBatches(boolean all) {
+        return Mono.defer(() -> {
+            List<CodeExecution> batch = nextBatch(all);
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+            // Stop at the first failed batch; it is retried with the next flush
+            return write(batch).flatMap(written -> written ? writeBatches(all) : Mono.empty());
+        });
+    }
+
+    private List<CodeExecution> nextBatch(boolean all) {
+        if (!all && completedCount.get() < batchSize) {
+            return List.of();
+        }
+        List<CodeExecution> batch = new ArrayList<>(Math.min(batchSize, Math.max(completedCount.get(), 0)));
+        CodeExecution execution;
+        while (batch.size() < batchSize && (execution = completed.poll()) != null) {
+            completedCount.decrementAndGet();
+            batch.add(execution);
+        }
+        return batch;
+    }
+
+    private Mono<Boolean> write(List<CodeExecution> batch) {
+        return reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CodeExecution.class)
+                .insert(batch)
+                .execute()
+                .then()
+                .onErrorResume(CodeExecutionStore::onlyDuplicateKeys, error -> Mono.empty())
+                .then(Mono.fromSupplier(() -> {
+                    flushes.increment();
+                    documentsWritten.add(batch.size());
+                    batch.forEach(execution -> unwritten.remove(execution.getId()));
+                    return true;
+                }))
+                .onErrorResume(error -> {
+                    // Keep the records visible and retry them with the next flush
+                    log.error("Failed to flush {} executions", batch.size(), error);
+                    flushFailures.increment();
+                    completed.addAll(batch);
+                    completedCount.addAndGet(batch.size());
+                    return Mono.just(false);
+                });
+    }
+
+    private static boolean onlyDuplicateKeys(Throwable error) {
+        List<Integer> codes = new ArrayList<>();
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BulkOperationException bulk) {
+                bulk.getErrors().forEach(writeError -> codes.add(writeError.getCode()));
+                break;
+            }
+            if (cause instanceof MongoBulkWriteException bulk) {
+                bulk.getWriteErrors().stream().map(BulkWriteError::getCode).forEach(codes::add);
+                break;
+            }
+        }
+        return !codes.isEmpty() && codes.stream().allMatch(code -> code == DUPLICATE_KEY);
+    }
+}
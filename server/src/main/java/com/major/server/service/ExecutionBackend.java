@@ -0,0 +1,27 @@
+package com.major.server.service;
+
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Something that can run a program and report its output. Backends are tried in
+ * {@link org.springframework.core.annotation.Order} order and the first one that
+ * {@link #supports} the runtime is used.
+ */
+public interface ExecutionBackend {
+
+    String name();
+
+    boolean supports(PistonRuntime runtime);
+
+    /**
+     * Runs {@code code} once. Results use Piston's response shape whatever the backend.
+     * Fails with {@link ExecutionRejectedException} when the backend cannot take the run.
+     */
+    Mono<PistonExecuteResponse> execute(PistonRuntime runtime, String code, String stdin);
+
+    Map<String, Object> stats();
+}
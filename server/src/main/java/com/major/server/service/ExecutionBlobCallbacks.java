@@ -0,0 +1,58 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Moves code, and output above {@code inline-output-chars}, out of execution
+ * documents into the {@link CodeBlobStore} on every reactive write. The entity
+ * keeps its bodies in memory; only the stored document is reduced to hashes.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExecutionBlobCallbacks
+        implements ReactiveBeforeConvertCallback<CodeExecution>, ReactiveBeforeSaveCallback<CodeExecution> {
+
+    private final CodeBlobStore codeBlobStore;
+
+    @Value("${app.execution.blobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.execution.blobs.inline-output-chars:4096}")
+    private int inlineOutputChars;
+
+    @Override
+    public Publisher<CodeExecution> onBeforeConvert(CodeExecution execution, String collection) {
+        if (!enabled) {
+            return Mono.just(execution);
+        }
+
+        // A hash is only taken once per execution, so saving it again adds no reference
+        Mono<String> code = execution.getCodeHash() == null && execution.getCode() != null
+                ? codeBlobStore.store(execution.getCode()).doOnNext(execution::setCodeHash)
+                : Mono.empty();
+        Mono<String> output = execution.getOutputHash() == null && execution.getOutput() != null
+                && execution.getOutput().length() > inlineOutputChars
+                ? codeBlobStore.store(execution.getOutput()).doOnNext(execution::setOutputHash)
+                : Mono.empty();
+        return Mono.when(code, output).thenReturn(execution);
+    }
+
+    @Override
+    public Publisher<CodeExecution> onBeforeSave(CodeExecution execution, Document document, String collection) {
+        if (execution.getCodeHash() != null) {
+            document.remove("code");
+        }
+        if (execution.getOutputHash() != null) {
+            document.remove("output");
+        }
+        return Mono.just(execution);
+    }
+}
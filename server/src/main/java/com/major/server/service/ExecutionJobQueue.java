@@ -0,0 +1,128 @@
+package com.major.server.service;
+
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process queue for executions submitted in asynchronous mode. At most
+ * {@code capacity} submitted executions are waiting or running at once; further
+ * submissions are rejected instead of waiting. Which of them runs next is up to
+ * the {@link ExecutionLaneScheduler}, where they queue with all other runs of
+ * their user's tier. Nothing parks a thread while an execution waits.
+ */
+@Slf4j
+@Component
+public class ExecutionJobQueue {
+
+    private final CodeExecutionService codeExecutionService;
+    private final int queueCapacity;
+    private final long retryAfterSeconds;
+
+    // One permit per job that is either running or waiting for a slot
+    private final Semaphore capacity;
+    private final Map<String, Sinks.One<CodeExecution>> pending = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ExecutionJobQueue(
+            CodeExecutionService codeExecutionService,
+            @Value("${app.execution.queue.capacity:200}") int queueCapacity,
+            @Value("${app.execution.queue.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.codeExecutionService = codeExecutionService;
+        this.queueCapacity = queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    /**
+     * Persists a PENDING execution and runs it in the background, in the lane of
+     * {@code tier}. Errors with {@link ExecutionQueueFullException} when the queue
+     * is saturated.
+     */
+    public Mono<CodeExecution> submit(CodeExecutionRequest request, String userId, UserTier tier) {
+        return Mono.defer(() -> {
+            if (shuttingDown || !capacity.tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new ExecutionQueueFullException(retryAfterSeconds));
+            }
+
+            return codeExecutionService.createPendingExecution(request, userId)
+                    .doOnError(error -> capacity.release())
+                    .doOnNext(execution -> {
+                        pending.put(execution.getId(), Sinks.one());
+                        submitted.increment();
+                        start(execution, request, tier);
+                    });
+        });
+    }
+
+    /**
+     * Waits up to {@code timeout} for a queued execution to finish. Completes empty
+     * when the execution is not queued here or does not finish in time.
+     */
+    public Mono<CodeExecution> awaitCompletion(String executionId, Duration timeout) {
+        Sinks.One<CodeExecution> completion = pending.get(executionId);
+        if (completion == null) {
+            return Mono.empty();
+        }
+        return completion.asMono()
+                .timeout(timeout, Mono.empty())
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "capacity", queueCapacity,
+                "inProgress", queueCapacity - capacity.availablePermits(),
+                "submitted", submitted.sum(),
+                "rejected", rejected.sum()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        int abandoned = pending.size();
+        if (abandoned > 0) {
+            log.warn("{} submitted executions had not finished at shutdown; they may remain PENDING", abandoned);
+        }
+    }
+
+    private void start(CodeExecution execution, CodeExecutionRequest request, UserTier tier) {
+        String executionId = execution.getId();
+        Sinks.One<CodeExecution> completion = pending.get(executionId);
+        codeExecutionService.runExecution(execution, request, tier)
+                .doOnNext(completion::tryEmitValue)
+                .doOnError(error -> {
+                    log.error("Queued execution {} failed", executionId, error);
+                    completion.tryEmitError(error);
+                })
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> finish(executionId))
+                .subscribe();
+    }
+
+    private void finish(String executionId) {
+        Sinks.One<CodeExecution> completion = pending.remove(executionId);
+        if (completion != null) {
+            // No-op when a value or an error was already emitted
+            completion.tryEmitEmpty();
+        }
+        capacity.release();
+    }
+}
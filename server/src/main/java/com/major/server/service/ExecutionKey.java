@@ -0,0 +1,12 @@
+package com.major.server.service;
+
+/**
+ * Identity of an execution for caching and de-duplication: the Piston language,
+ * the runtime version it resolves to and a hash of the source.
+ */
+public record ExecutionKey(String language, String version, String codeHash) {
+
+    public static ExecutionKey of(String language, String version, String code) {
+        return new ExecutionKey(language, version, ContentHash.sha256Hex(code));
+    }
+}
@@ -0,0 +1,317 @@
+package com.major.server.service;
+
+import com.major.server.model.UserTier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admits program runs through one lane per {@link UserTier}, so that when the
+ * backends are saturated Pro users are not stuck behind anonymous traffic.
+ * <p>
+ * At most {@code max-concurrent} runs are in progress overall and at most a lane's
+ * own {@code max-concurrent} share of them belong to that lane. When a slot frees
+ * up it goes to a waiting lane chosen by stride scheduling on the lane weights
+ * ({@code mode=weighted}), or to the highest-priority waiting lane
+ * ({@code mode=strict}). A lane whose queue already holds {@code queue-capacity}
+ * waiters rejects new runs, and so does a run that waited longer than
+ * {@code max-wait-ms}. Waiting never holds a thread.
+ */
+@Component
+public class ExecutionLaneScheduler {
+
+    // Stride numerator; a lane's pass advances by STRIDE / weight per admitted run
+    private static final long STRIDE = 1 << 20;
+
+    private static final int WAITING = 0, GRANTED = 1, CANCELLED = 2;
+
+    private final boolean strict;
+    private final int maxConcurrent;
+    private final Duration maxWait;
+    private final Map<UserTier, Lane> lanes = new EnumMap<>(UserTier.class);
+    // Lanes from highest to lowest priority, which is also the tie-break order
+    private final List<Lane> priorityOrder = new ArrayList<>();
+
+    // Guards every lane's queue, running count and pass
+    private final Object lock = new Object();
+    private int running;
+
+    public ExecutionLaneScheduler(
+            Environment environment,
+            @Value("${app.execution.lanes.mode:weighted}") String mode,
+            @Value("${app.execution.lanes.max-concurrent:32}") int maxConcurrent,
+            @Value("${app.execution.lanes.max-wait-ms:30000}") long maxWaitMs) {
+        this.strict = "strict".equalsIgnoreCase(mode);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+
+        for (UserTier tier : List.of(UserTier.PRO, UserTier.AUTHENTICATED, UserTier.ANONYMOUS)) {
+            String prefix = "app.execution.lanes." + tier.name().toLowerCase(Locale.ROOT) + ".";
+            Lane lane = new Lane(tier,
+                    environment.getProperty(prefix + "weight", Integer.class, defaultWeight(tier)),
+                    environment.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                    environment.getProperty(prefix + "queue-capacity", Integer.class, 100));
+            lanes.put(tier, lane);
+            priorityOrder.add(lane);
+        }
+    }
+
+    /**
+     * Runs {@code work} once the lane of {@code tier} gets a slot, and frees the slot
+     * when it terminates or is cancelled. Fails with {@link ExecutionRejectedException}
+     * when the lane's queue is full or the wait exceeds {@code max-wait-ms}.
+     */
+    public <T> Mono<T> schedule(UserTier tier, Supplier<Mono<T>> work) {
+        return acquire(tier).flatMap(permit -> permit.claim()
+                // Deferred, so a supplier that throws still releases the slot
+                ? Mono.defer(work).doFinally(signal -> permit.release())
+                : Mono.empty());
+    }
+
+    /**
+     * Like {@link #schedule}, for work that streams.
+     */
+    public <T> Flux<T> scheduleMany(UserTier tier, Supplier<Flux<T>> work) {
+        return acquire(tier).flatMapMany(permit -> permit.claim()
+                ? Flux.defer(work).doFinally(signal -> permit.release())
+                : Flux.empty());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", strict ? "strict" : "weighted");
+        stats.put("maxConcurrent", maxConcurrent);
+        synchronized (lock) {
+            stats.put("running", running);
+        }
+        for (Lane lane : priorityOrder) {
+            stats.put(lane.tier.name().toLowerCase(Locale.ROOT), lane.stats());
+        }
+        return stats;
+    }
+
+    private Mono<Permit> acquire(UserTier tier) {
+        Lane lane = lanes.get(tier != null ? tier : UserTier.ANONYMOUS);
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = new Waiter(lane, sink);
+                    synchronized (lock) {
+                        if (lane.queue.size() >= lane.queueCapacity) {
+                            lane.rejected.increment();
+                            sink.error(new ExecutionRejectedException(
+                                    "Too many queued executions for " + lane.tier.name().toLowerCase(Locale.ROOT) + " users"));
+                            return;
+                        }
+                        activate(lane);
+                        lane.queue.add(waiter);
+                    }
+                    sink.onCancel(() -> cancel(waiter));
+                    dispatch();
+                })
+                .timeout(maxWait)
+                .onErrorMap(TimeoutException.class, error -> {
+                    lane.timedOut.increment();
+                    return new ExecutionRejectedException("Timed out waiting for an execution slot");
+                });
+    }
+
+    /**
+     * Hands free slots to waiting lanes. Permits are emitted outside the lock, since
+     * subscribers may start (and even finish) their work synchronously.
+     */
+    private void dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (lock) {
+            while (running < maxConcurrent) {
+                Lane lane = nextLane();
+                if (lane == null) {
+                    break;
+                }
+                Waiter waiter = lane.queue.poll();
+                if (!waiter.state.compareAndSet(WAITING, GRANTED)) {
+                    continue;
+                }
+                lane.running++;
+                lane.pass += lane.stride;
+                running++;
+                granted.add(waiter);
+            }
+        }
+        for (Waiter waiter : granted) {
+            waiter.lane.recordWait(System.nanoTime() - waiter.enqueuedAt);
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private Lane nextLane() {
+        Lane next = null;
+        for (Lane lane : priorityOrder) {
+            if (lane.queue.isEmpty() || lane.running >= lane.maxConcurrent) {
+                continue;
+            }
+            if (strict) {
+                return lane;
+            }
+            if (next == null || lane.pass < next.pass) {
+                next = lane;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * A lane that was idle resumes at the current virtual time rather than with the
+     * credit it would have built up while idle.
+     */
+    private void activate(Lane lane) {
+        if (!lane.queue.isEmpty() || lane.running > 0) {
+            return;
+        }
+        long virtualTime = Long.MAX_VALUE;
+        for (Lane other : priorityOrder) {
+            if (other != lane && (!other.queue.isEmpty() || other.running > 0)) {
+                virtualTime = Math.min(virtualTime, other.pass);
+            }
+        }
+        if (virtualTime != Long.MAX_VALUE) {
+            lane.pass = Math.max(lane.pass, virtualTime);
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(WAITING, CANCELLED)) {
+            synchronized (lock) {
+                waiter.lane.queue.remove(waiter);
+            }
+        } else if (waiter.permit.claim()) {
+            // Granted, but the subscriber went away before it could take the slot
+            waiter.permit.release();
+        }
+    }
+
+    private void release(Lane lane) {
+        synchronized (lock) {
+            lane.running--;
+            running--;
+        }
+        dispatch();
+    }
+
+    private static int defaultWeight(UserTier tier) {
+        return switch (tier) {
+            case PRO -> 6;
+            case AUTHENTICATED -> 3;
+            case ANONYMOUS -> 1;
+        };
+    }
+
+    private static final class Lane {
+
+        private final UserTier tier;
+        private final int weight;
+        private final int maxConcurrent;
+        private final int queueCapacity;
+        private final long stride;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private int running;
+        private long pass;
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder totalWaitMs = new LongAdder();
+        private final LatencyHistogram waitMs = new LatencyHistogram();
+
+        Lane(UserTier tier, int weight, int maxConcurrent, int queueCapacity) {
+            this.tier = tier;
+            this.weight = Math.max(1, weight);
+            this.maxConcurrent = maxConcurrent;
+            this.queueCapacity = queueCapacity;
+            this.stride = STRIDE / this.weight;
+        }
+
+        void recordWait(long waitNanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+            admitted.increment();
+            totalWaitMs.add(millis);
+            waitMs.record(millis);
+        }
+
+        Map<String, Object> stats() {
+            long[] waits = waitMs.snapshot();
+            long count = admitted.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("weight", weight);
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("queueCapacity", queueCapacity);
+            // Read without the lock; good enough for metrics
+            stats.put("running", running);
+            stats.put("queued", queue.size());
+            stats.put("admitted", count);
+            stats.put("rejected", rejected.sum());
+            stats.put("timedOut", timedOut.sum());
+            stats.put("meanWaitMs", count == 0 ? 0.0 : (double) totalWaitMs.sum() / count);
+            stats.put("p50WaitMs", LatencyHistogram.valueAtQuantile(waits, 0.50));
+            stats.put("p95WaitMs", LatencyHistogram.valueAtQuantile(waits, 0.95));
+            stats.put("p99WaitMs", LatencyHistogram.valueAtQuantile(waits, 0.99));
+            return stats;
+        }
+    }
+
+    private final class Waiter {
+
+        private final Lane lane;
+        private final MonoSink<Permit> sink;
+        private final Permit permit;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(Lane lane, MonoSink<Permit> sink) {
+            this.lane = lane;
+            this.sink = sink;
+            this.permit = new Permit(lane);
+        }
+    }
+
+    /**
+     * One slot. Whoever {@link #claim claims} it (the work, or a cancellation that
+     * raced with the grant) is responsible for releasing it, exactly once.
+     */
+    private final class Permit {
+
+        private final Lane lane;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                ExecutionLaneScheduler.this.release(lane);
+            }
+        }
+    }
+}
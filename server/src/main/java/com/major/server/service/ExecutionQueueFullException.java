@@ -0,0 +1,14 @@
+package com.major.server.service;
+
+import lombok.Getter;
+
+@Getter
+public class ExecutionQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ExecutionQueueFullException(long retryAfterSeconds) {
+        super("Execution queue is full");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
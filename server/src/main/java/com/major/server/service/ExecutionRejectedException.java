@@ -0,0 +1,12 @@
+package com.major.server.service;
+
+/**
+ * Thrown when an execution is turned away before reaching Piston, e.g. because
+ * the circuit breaker is open or the concurrency limit is reached.
+ */
+public class ExecutionRejectedException extends RuntimeException {
+
+    public ExecutionRejectedException(String message) {
+        super(message);
+    }
+}
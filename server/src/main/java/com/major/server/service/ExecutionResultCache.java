@@ -0,0 +1,85 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caches the outcome of deterministic executions so that re-running the same
+ * (language, version, code) triple is answered without calling Piston.
+ */
+@Component
+public class ExecutionResultCache {
+
+    // Rough per-entry overhead for the key, the record and the map node
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private final boolean enabled;
+    private final WeightedLruCache<ExecutionKey, CachedResult> cache;
+
+    public ExecutionResultCache(
+            @Value("${app.execution.cache.enabled:true}") boolean enabled,
+            @Value("${app.execution.cache.max-entries:10000}") long maxEntries,
+            @Value("${app.execution.cache.max-bytes:67108864}") long maxBytes,
+            @Value("${app.execution.cache.ttl-ms:300000}") long ttlMs) {
+        this.enabled = enabled;
+        this.cache = new WeightedLruCache<>(maxEntries, maxBytes, ttlMs, CachedResult::estimatedSize);
+    }
+
+    public Optional<CachedResult> get(ExecutionKey key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(key));
+    }
+
+    public void put(ExecutionKey key, CodeExecution execution) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(key, CachedResult.from(execution));
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    public record CachedResult(CodeExecution.ExecutionStatus status, String output, String error,
+                               boolean outputTruncated, Long executionTime,
+                               String pistonLanguage, String pistonVersion) {
+
+        static CachedResult from(CodeExecution execution) {
+            return new CachedResult(
+                    execution.getStatus(),
+                    execution.getOutput(),
+                    execution.getError(),
+                    execution.isOutputTruncated(),
+                    execution.getExecutionTime(),
+                    execution.getPistonLanguage(),
+                    execution.getPistonVersion()
+            );
+        }
+
+        public void applyTo(CodeExecution execution) {
+            execution.setStatus(status);
+            execution.setOutput(output);
+            execution.setError(error);
+            execution.setOutputTruncated(outputTruncated);
+            // How long the program took when it actually ran
+            execution.setExecutionTime(executionTime);
+            execution.setPistonLanguage(pistonLanguage);
+            execution.setPistonVersion(pistonVersion);
+        }
+
+        long estimatedSize() {
+            return ENTRY_OVERHEAD_BYTES + 2L * (length(output) + length(error));
+        }
+
+        private static long length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import com.major.server.model.ExecutionStatsRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics kept in memory and updated as executions complete, so that
+ * stats endpoints never scan {@code code_executions}. Per-language counters, status
+ * counts and {@link LatencyHistogram latency histograms} are checkpointed to the
+ * {@code execution_stats} collection every {@code checkpoint-interval-ms} as
+ * {@code $inc}s of what changed since the previous checkpoint, so several instances
+ * can share the same documents. Per-user counts are only held until they are
+ * checkpointed and are read back from the collection.
+ * <p>
+ * The first checkpoint against an empty collection backfills counts (not latencies)
+ * from the executions recorded before the first instance started.
+ */
+@Slf4j
+@Service
+public class ExecutionStatsService {
+
+    private static final CodeExecution.ExecutionStatus[] STATUSES = CodeExecution.ExecutionStatus.values();
+    private static final String META = "meta";
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final Duration BACKFILL_LEASE = Duration.ofMinutes(10);
+    private static final String BACKFILL_STARTED = "started";
+    private static final String BACKFILL_DONE = "done";
+    private static final String BACKFILL_FAILED = "failed";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final boolean backfill;
+    private final Duration shutdownTimeout;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private final Map<String, LanguageStats> languages = new ConcurrentHashMap<>();
+    // Per-user counts not checkpointed yet, as [total, per status...]
+    private final Map<String, long[]> pendingUsers = new ConcurrentHashMap<>();
+    private final Map<String, long[]> checkpointingUsers = new ConcurrentHashMap<>();
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+    private final AtomicBoolean backfillChecked = new AtomicBoolean();
+
+    private final LongAdder checkpoints = new LongAdder();
+    private final LongAdder checkpointFailures = new LongAdder();
+
+    public ExecutionStatsService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${app.execution.stats.backfill:true}") boolean backfill,
+            @Value("${app.execution.stats.shutdown-timeout-ms:5000}") long shutdownTimeoutMs) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.backfill = backfill;
+        this.shutdownTimeout = Duration.ofMillis(shutdownTimeoutMs);
+    }
+
+    /**
+     * Loads the stored totals (and backfills them if needed) in the background.
+     */
+    @PostConstruct
+    public void start() {
+        checkpoint().subscribe();
+    }
+
+    /**
+     * Counts a finished execution. Latency is only recorded for executions that
+     * actually ran, i.e. have a positive {@code executionTime}.
+     */
+    public void record(CodeExecution execution) {
+        if (!execution.isCompleted() || execution.getLanguage() == null) {
+            return;
+        }
+        languages.computeIfAbsent(execution.getLanguage(), LanguageStats::new).record(execution);
+        if (execution.getUserId() != null) {
+            long[] increment = new long[STATUSES.length + 1];
+            increment[0] = 1;
+            increment[execution.getStatus().ordinal() + 1] = 1;
+            pendingUsers.merge(execution.getUserId(), increment, ExecutionStatsService::add);
+        }
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, Object> byLanguage = new TreeMap<>();
+        long total = 0;
+        long[] byStatus = new long[STATUSES.length];
+        for (LanguageStats stats : languages.values()) {
+            Counts counts = stats.current();
+            if (counts.count() == 0) {
+                continue;
+            }
+            byLanguage.put(stats.language, describe(counts));
+            total += counts.count();
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] += counts.byStatus()[i];
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", total);
+        summary.put("byStatus", statusMap(byStatus));
+        summary.put("languages", byLanguage);
+        return summary;
+    }
+
+    public Optional<Map<String, Object>> languageStats(String language) {
+        LanguageStats stats = languages.get(language);
+        return stats != null ? Optional.of(describe(stats.current())) : Optional.empty();
+    }
+
+    public long languageCount(String language) {
+        LanguageStats stats = languages.get(language);
+        return stats != null ? stats.current().count() : 0;
+    }
+
+    public Mono<Long> userCount(String userId) {
+        return userCounts(userId).map(counts -> counts[0]);
+    }
+
+    public Mono<Map<String, Object>> userStats(String userId) {
+        return userCounts(userId).map(counts -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", counts[0]);
+            stats.put("byStatus", statusMap(Arrays.copyOfRange(counts, 1, counts.length)));
+            return stats;
+        });
+    }
+
+    /**
+     * Stored counts plus whatever this instance has not checkpointed yet.
+     */
+    private Mono<long[]> userCounts(String userId) {
+        return reactiveMongoTemplate.findById(ExecutionStatsRecord.id(ExecutionStatsRecord.USER, userId),
+                        ExecutionStatsRecord.class)
+                .map(record -> {
+                    long[] counts = new long[STATUSES.length + 1];
+                    counts[0] = record.getCount();
+                    for (int i = 0; i < STATUSES.length; i++) {
+                        counts[i + 1] = valueOf(record.getByStatus(), STATUSES[i].name());
+                    }
+                    return counts;
+                })
+                .defaultIfEmpty(new long[STATUSES.length + 1])
+                .map(stored -> add(add(stored, pendingUsers.get(userId)), checkpointingUsers.get(userId)));
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "languages", languages.size(),
+                "pendingUsers", pendingUsers.size(),
+                "checkpoints", checkpoints.sum(),
+                "checkpointFailures", checkpointFailures.sum()
+        );
+    }
+
+    @Scheduled(fixedDelayString = "${app.execution.stats.checkpoint-interval-ms:10000}")
+    public void checkpointScheduled() {
+        checkpoint().subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        while (checkpointing.get() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        checkpoint().block(Duration.ofNanos(Math.max(deadline - System.nanoTime(), 0)));
+    }
+
+    /**
+     * Writes everything counted since the previous checkpoint and reloads the
+     * language totals, which then include other instances' counts. Only one
+     * checkpoint runs at a time; failed parts are retried with the next one.
+     */
+    Mono<Void> checkpoint() {
+        return Mono.defer(() -> {
+            if (!checkpointing.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            return backfillOnce()
+                    .then(Flux.fromIterable(List.copyOf(languages.values())).concatMap(this::checkpointLanguage).then())
+                    .then(checkpointUsers())
+                    .then(refreshLanguages())
+                    .doOnSuccess(done -> checkpoints.increment())
+                    .doFinally(signal -> checkpointing.set(false));
+        });
+    }
+
+    private Mono<Void> checkpointLanguage(LanguageStats stats) {
+        Counts local = stats.local();
+        Counts delta = local.minus(stats.persisted.checkpointed());
+        if (delta.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveMongoTemplate.findAndModify(
+                        byId(ExecutionStatsRecord.LANGUAGE, stats.language),
+                        increment(ExecutionStatsRecord.LANGUAGE, stats.language, delta),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        ExecutionStatsRecord.class)
+                .doOnNext(record -> stats.persisted = new Persisted(Counts.from(record), local))
+                .then()
+                .onErrorResume(error -> failed("Failed to checkpoint stats for " + stats.language, error));
+    }
+
+    private Mono<Void> checkpointUsers() {
+        for (String userId : pendingUsers.keySet()) {
+            long[][] taken = new long[1][];
+            pendingUsers.computeIfPresent(userId, (id, counts) -> {
+                taken[0] = counts;
+                return null;
+            });
+            if (taken[0] != null) {
+                checkpointingUsers.merge(userId, taken[0], ExecutionStatsService::add);
+            }
+        }
+        if (checkpointingUsers.isEmpty()) {
+            return Mono.empty();
+        }
+
+        ReactiveBulkOperations bulk = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                ExecutionStatsRecord.class);
+        checkpointingUsers.forEach((userId, counts) -> bulk.upsert(byId(ExecutionStatsRecord.USER, userId),
+                increment(ExecutionStatsRecord.USER, userId, Counts.ofUser(counts))));
+        return bulk.execute()
+                .doOnSuccess(result -> checkpointingUsers.clear())
+                .then()
+                .onErrorResume(error -> {
+                    checkpointingUsers.forEach((userId, counts) -> pendingUsers.merge(userId, counts, ExecutionStatsService::add));
+                    checkpointingUsers.clear();
+                    return failed("Failed to checkpoint per-user stats", error);
+                });
+    }
+
+    private Mono<Void> refreshLanguages() {
+        return reactiveMongoTemplate
+                .find(Query.query(Criteria.where("kind").is(ExecutionStatsRecord.LANGUAGE)), ExecutionStatsRecord.class)
+                .doOnNext(record -> {
+                    LanguageStats stats = languages.computeIfAbsent(record.getKey(), LanguageStats::new);
+                    stats.persisted = new Persisted(Counts.from(record), stats.persisted.checkpointed());
+                })
+                .then()
+                .onErrorResume(error -> failed("Failed to load execution stats", error));
+    }
+
+    /**
+     * Seeds an empty stats collection from the executions that completed before the
+     * first instance to claim the backfill started. The marker document is only set to
+     * {@code done} once both kinds are backfilled; a failed attempt releases it and is
+     * retried with the next checkpoint, and a claim left {@code started} by an instance
+     * that died is taken over after {@link #BACKFILL_LEASE}. Every attempt uses the
+     * cutoff stored by the first one, and each stats record remembers which statuses
+     * were already backfilled, so a retry never counts an execution twice.
+     */
+    private Mono<Void> backfillOnce() {
+        if (!backfill || !backfillChecked.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Query claimable = Query.query(Criteria.where("_id").is(ExecutionStatsRecord.id(META, "backfill"))
+                .and("state").ne(BACKFILL_DONE)
+                .orOperator(Criteria.where("state").ne(BACKFILL_STARTED),
+                        Criteria.where("updatedAt").lt(now.minus(BACKFILL_LEASE))));
+        Update claim = new Update()
+                .setOnInsert("kind", META)
+                .setOnInsert("key", "backfill")
+                .setOnInsert("before", startedAt)
+                .set("state", BACKFILL_STARTED)
+                .set("updatedAt", now);
+
+        return reactiveMongoTemplate.findAndModify(claimable, claim,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class,
+                        reactiveMongoTemplate.getCollectionName(ExecutionStatsRecord.class))
+                .flatMap(marker -> {
+                    LocalDateTime before = LocalDateTime.ofInstant(marker.getDate("before").toInstant(),
+                            ZoneId.systemDefault());
+                    return backfill("language", ExecutionStatsRecord.LANGUAGE, before)
+                            .then(Mono.defer(() -> backfill("userId", ExecutionStatsRecord.USER, before)))
+                            .then(Mono.defer(() -> markBackfill(BACKFILL_DONE)))
+                            .doOnSuccess(done -> log.info("Backfilled execution stats from executions before {}", before))
+                            .onErrorResume(error -> {
+                                backfillChecked.set(false);
+                                return markBackfill(BACKFILL_FAILED)
+                                        .onErrorResume(ignored -> Mono.empty())
+                                        .then(Mono.error(error));
+                            });
+                })
+                // Already done, or another instance is on it
+                .onErrorResume(DuplicateKeyException.class, claimed -> Mono.empty())
+                .onErrorResume(error -> failed("Failed to backfill execution stats", error));
+    }
+
+    private Mono<Void> markBackfill(String state) {
+        return reactiveMongoTemplate.updateFirst(byId(META, "backfill"),
+                        new Update().set("state", state).currentDate("updatedAt"), ExecutionStatsRecord.class)
+                .then();
+    }
+
+    /**
+     * Each group first makes sure its record exists, then adds its count only if that
+     * record has not had the group's status backfilled yet; ordered, so the upsert
+     * always comes before the increment.
+     */
+    private Mono<Void> backfill(String field, String kind, LocalDateTime before) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(field).ne(null)
+                        .and("status").nin(CodeExecution.ExecutionStatus.PENDING, CodeExecution.ExecutionStatus.RUNNING)
+                        .and("executedAt").lt(before)),
+                Aggregation.group(field, "status").count().as("count"));
+
+        return reactiveMongoTemplate.aggregate(aggregation, CodeExecution.class, Document.class)
+                .buffer(BACKFILL_BATCH_SIZE)
+                .concatMap(groups -> {
+                    ReactiveBulkOperations bulk = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED,
+                            ExecutionStatsRecord.class);
+                    for (Document group : groups) {
+                        Document id = group.get("_id", Document.class);
+                        String key = id.getString(field);
+                        String status = id.getString("status");
+                        long count = ((Number) group.get("count")).longValue();
+                        bulk.upsert(byId(kind, key), new Update()
+                                .setOnInsert("kind", kind)
+                                .setOnInsert("key", key));
+                        bulk.updateOne(Query.query(Criteria.where("_id").is(ExecutionStatsRecord.id(kind, key))
+                                        .and("backfilled").ne(status)),
+                                new Update()
+                                        .inc("count", count)
+                                        .inc("byStatus." + status, count)
+                                        .addToSet("backfilled", status));
+                    }
+                    return bulk.execute();
+                })
+                .then();
+    }
+
+    private Mono<Void> failed(String message, Throwable error) {
+        log.error(message, error);
+        checkpointFailures.increment();
+        return Mono.empty();
+    }
+
+    private static Query byId(String kind, String key) {
+        return Query.query(Criteria.where("_id").is(ExecutionStatsRecord.id(kind, key)));
+    }
+
+    private static Update increment(String kind, String key, Counts delta) {
+        Update update = new Update()
+                .setOnInsert("kind", kind)
+                .setOnInsert("key", key)
+                .inc("count", delta.count())
+                .currentDate("updatedAt");
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (delta.byStatus()[i] != 0) {
+                update.inc("byStatus." + STATUSES[i].name(), delta.byStatus()[i]);
+            }
+        }
+        for (int i = 0; i < delta.buckets().length; i++) {
+            if (delta.buckets()[i] != 0) {
+                update.inc("latencyBuckets." + i, delta.buckets()[i]);
+            }
+        }
+        if (delta.latencySumMs() != 0) {
+            update.inc("latencySumMs", delta.latencySumMs());
+        }
+        if (delta.latencyMaxMs() > 0) {
+            update.max("latencyMaxMs", delta.latencyMaxMs());
+        }
+        return update;
+    }
+
+    private static Map<String, Object> describe(Counts counts) {
+        long samples = Arrays.stream(counts.buckets()).sum();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("samples", samples);
+        latency.put("meanMs", samples == 0 ? 0.0 : (double) counts.latencySumMs() / samples);
+        latency.put("p50Ms", quantile(counts, 0.50));
+        latency.put("p95Ms", quantile(counts, 0.95));
+        latency.put("p99Ms", quantile(counts, 0.99));
+        latency.put("maxMs", counts.latencyMaxMs());
+
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("count", counts.count());
+        description.put("byStatus", statusMap(counts.byStatus()));
+        description.put("latency", latency);
+        return description;
+    }
+
+    // Bucket upper bounds can overshoot the largest value actually seen
+    private static long quantile(Counts counts, double q) {
+        return Math.min(LatencyHistogram.valueAtQuantile(counts.buckets(), q), counts.latencyMaxMs());
+    }
+
+    private static Map<String, Long> statusMap(long[] byStatus) {
+        Map<String, Long> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (byStatus[i] != 0) {
+                statuses.put(STATUSES[i].name(), byStatus[i]);
+            }
+        }
+        return statuses;
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        if (b == null) {
+            return a;
+        }
+        long[] sum = a.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += b[i];
+        }
+        return sum;
+    }
+
+    private static long valueOf(Map<String, Long> values, String key) {
+        Long value = values != null ? values.get(key) : null;
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Live counters for one language. {@code persisted} holds the totals last read
+     * from the collection together with the local counts they already include, so
+     * the current value is {@code stored + (local - checkpointed)}.
+     */
+    private static final class LanguageStats {
+
+        private final String language;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder[] byStatus = new LongAdder[STATUSES.length];
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder latencySumMs = new LongAdder();
+        private final LongAccumulator latencyMaxMs = new LongAccumulator(Math::max, 0);
+        private volatile Persisted persisted = new Persisted(Counts.EMPTY, Counts.EMPTY);
+
+        LanguageStats(String language) {
+            this.language = language;
+            Arrays.setAll(byStatus, i -> new LongAdder());
+        }
+
+        void record(CodeExecution execution) {
+            count.increment();
+            byStatus[execution.getStatus().ordinal()].increment();
+            Long time = execution.getExecutionTime();
+            if (time != null && time > 0) {
+                latency.record(time);
+                latencySumMs.add(time);
+                latencyMaxMs.accumulate(time);
+            }
+        }
+
+        Counts local() {
+            long[] statuses = new long[STATUSES.length];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = byStatus[i].sum();
+            }
+            return new Counts(count.sum(), statuses, latency.snapshot(), latencySumMs.sum(), latencyMaxMs.get());
+        }
+
+        Counts current() {
+            Persisted snapshot = persisted;
+            return snapshot.stored().plus(local().minus(snapshot.checkpointed()));
+        }
+    }
+
+    private record Persisted(Counts stored, Counts checkpointed) {
+    }
+
+    private record Counts(long count, long[] byStatus, long[] buckets, long latencySumMs, long latencyMaxMs) {
+
+        static final Counts EMPTY = new Counts(0, new long[STATUSES.length], new long[LatencyHistogram.BUCKETS], 0, 0);
+
+        static Counts from(ExecutionStatsRecord record) {
+            long[] statuses = new long[STATUSES.length];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = valueOf(record.getByStatus(), STATUSES[i].name());
+            }
+            long[] buckets = new long[LatencyHistogram.BUCKETS];
+            if (record.getLatencyBuckets() != null) {
+                record.getLatencyBuckets().forEach((index, count) -> {
+                    int i = Integer.parseInt(index);
+                    if (i >= 0 && i < buckets.length && count != null) {
+                        buckets[i] = count;
+                    }
+                });
+            }
+            return new Counts(record.getCount(), statuses, buckets, record.getLatencySumMs(), record.getLatencyMaxMs());
+        }
+
+        static Counts ofUser(long[] counts) {
+            return new Counts(counts[0], Arrays.copyOfRange(counts, 1, counts.length), EMPTY.buckets(), 0, 0);
+        }
+
+        Counts plus(Counts other) {
+            return new Counts(count + other.count, combine(byStatus, other.byStatus, 1), combine(buckets, other.buckets, 1),
+                    latencySumMs + other.latencySumMs, Math.max(latencyMaxMs, other.latencyMaxMs));
+        }
+
+        /**
+         * Counts since {@code earlier}; the maximum is kept as is, since it can only be combined with $max.
+         */
+        Counts minus(Counts earlier) {
+            return new Counts(count - earlier.count, combine(byStatus, earlier.byStatus, -1),
+                    combine(buckets, earlier.buckets, -1), latencySumMs - earlier.latencySumMs, latencyMaxMs);
+        }
+
+        boolean isEmpty() {
+            return count == 0 && latencySumMs == 0 && Arrays.stream(buckets).allMatch(bucket -> bucket == 0);
+        }
+
+        private static long[] combine(long[] a, long[] b, int sign) {
+            long[] result = new long[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] + sign * b[i];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.dto.ExecutionStreamEvent;
+import com.major.server.dto.PistonRuntime;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs code through Piston's interactive API and streams status transitions and
+ * output chunks to the caller as they happen. Only the final record, with output
+ * capped at {@code app.execution.max-output-chars}, is persisted.
+ * <p>
+ * Streams always run on Piston, through {@link PistonExecutionBackend#stream}, so
+ * they share its circuit breaker and concurrency limit. Demand from the caller
+ * reaches the socket: a client that reads slowly slows down reading from Piston,
+ * with at most {@code buffer-size} events fetched ahead of it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExecutionStreamService {
+
+    private final CodeExecutionService codeExecutionService;
+    private final CodeExecutionStore codeExecutionStore;
+    private final PistonExecutionBackend pistonExecutionBackend;
+    private final ExecutionLaneScheduler executionLaneScheduler;
+
+    @Value("${app.execution.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${app.execution.stream.timeout-ms:30000}")
+    private long streamTimeoutMs;
+
+    @Value("${app.execution.max-output-chars:65536}")
+    private int maxOutputChars;
+
+    /**
+     * The stream holds a slot in the lane of {@code tier} while it runs.
+     */
+    public Flux<ExecutionStreamEvent> streamExecution(CodeExecutionRequest request, String userId, UserTier tier) {
+        return codeExecutionService.createPendingExecution(request, userId)
+                .flatMapMany(execution -> run(execution, request, tier));
+    }
+
+    private Flux<ExecutionStreamEvent> run(CodeExecution execution, CodeExecutionRequest request, UserTier tier) {
+        StreamState state = new StreamState(execution, maxOutputChars);
+        PistonRuntime runtime = codeExecutionService.resolveRuntime(request.getLanguage());
+
+        Flux<ExecutionStreamEvent> events = executionLaneScheduler
+                .scheduleMany(tier, () -> pistonExecutionBackend.stream(runtime, request.getCode())
+                        .take(Duration.ofMillis(streamTimeoutMs)))
+                .<ExecutionStreamEvent>handle((message, sink) -> {
+                    ExecutionStreamEvent event = state.apply(message);
+                    if (event != null) {
+                        sink.next(event);
+                    }
+                })
+                .limitRate(bufferSize)
+                .onErrorResume(ExecutionRejectedException.class, error -> {
+                    log.warn("Execution {} rejected: {}", execution.getId(), error.getMessage());
+                    state.reject(error.getMessage());
+                    return Flux.empty();
+                })
+                .onErrorResume(error -> {
+                    log.error("Error streaming execution {}", execution.getId(), error);
+                    state.fail("Error executing code: " + error.getMessage());
+                    return Flux.empty();
+                });
+
+        return events
+                .startWith(ExecutionStreamEvent.status(execution.getId(), CodeExecution.ExecutionStatus.PENDING))
+                .concatWith(Mono.defer(() -> persist(state)))
+                .doOnCancel(() -> {
+                    state.fail("Client disconnected before the execution finished");
+                    persist(state).subscribe();
+                });
+    }
+
+    /**
+     * Saves the final record once, however often it is called: a client that cancels
+     * while the save is in flight waits for that save instead of starting another.
+     */
+    private Mono<ExecutionStreamEvent> persist(StreamState state) {
+        return state.saveOnce(() -> codeExecutionStore.complete(state.finish()))
+                .map(saved -> {
+                    ExecutionStreamEvent event = ExecutionStreamEvent.status(saved.getId(), saved.getStatus());
+                    event.setExitCode(state.exitCode);
+                    event.setOutputTruncated(saved.isOutputTruncated());
+                    return event;
+                });
+    }
+
+    /**
+     * Folds Piston's interactive messages into the execution record, keeping at
+     * most {@code maxOutputChars} of combined stdout and stderr.
+     */
+    private static class StreamState {
+
+        private final CodeExecution execution;
+        private final int maxOutputChars;
+        private final StringBuilder stdout = new StringBuilder();
+        private final StringBuilder stderr = new StringBuilder();
+        private final long startedAt = System.nanoTime();
+        private boolean truncated;
+        private boolean running;
+        private boolean exited;
+        private boolean finished;
+        private Integer exitCode;
+        private Mono<CodeExecution> saved;
+
+        StreamState(CodeExecution execution, int maxOutputChars) {
+            this.execution = execution;
+            this.maxOutputChars = maxOutputChars;
+        }
+
+        synchronized ExecutionStreamEvent apply(JsonNode message) {
+            String type = message.path("type").asText();
+            switch (type) {
+                case "runtime" -> {
+                    execution.setPistonLanguage(message.path("language").asText(null));
+                    execution.setPistonVersion(message.path("version").asText(null));
+                }
+                case "stage" -> {
+                    if (!running) {
+                        running = true;
+                        execution.setStatus(CodeExecution.ExecutionStatus.RUNNING);
+                        return ExecutionStreamEvent.status(execution.getId(), CodeExecution.ExecutionStatus.RUNNING);
+                    }
+                }
+                case "data" -> {
+                    String stream = message.path("stream").asText();
+                    String accepted = append("stderr".equals(stream) ? stderr : stdout, message.path("data").asText(""));
+                    if (accepted != null) {
+                        return ExecutionStreamEvent.output(execution.getId(), stream, accepted);
+                    }
+                }
+                case "exit" -> {
+                    JsonNode code = message.path("code");
+                    exitCode = code.isNumber() ? code.asInt() : null;
+                    boolean killed = "SIGKILL".equals(message.path("signal").asText(null));
+                    boolean compileStage = "compile".equals(message.path("stage").asText());
+                    if (killed) {
+                        exited = true;
+                        execution.markAsTimeout();
+                    } else if (exitCode == null || exitCode != 0) {
+                        exited = true;
+                        execution.setStatus(CodeExecution.ExecutionStatus.ERROR);
+                    } else if (!compileStage) {
+                        exited = true;
+                        execution.setStatus(CodeExecution.ExecutionStatus.SUCCESS);
+                    }
+                }
+                case "error" -> fail(message.path("message").asText("Piston reported an error"));
+                default -> log.debug("Ignoring Piston message of type {}", type);
+            }
+            return null;
+        }
+
+        synchronized void fail(String reason) {
+            if (!exited && !finished) {
+                exited = true;
+                execution.markAsError(reason);
+            }
+        }
+
+        synchronized void reject(String reason) {
+            if (!exited && !finished) {
+                exited = true;
+                execution.markAsRejected(reason);
+            }
+        }
+
+        synchronized Mono<CodeExecution> saveOnce(Supplier<Mono<CodeExecution>> save) {
+            if (saved == null) {
+                // Cached, so cancelling one subscriber does not cancel the save itself
+                saved = Mono.defer(save).cache();
+            }
+            return saved;
+        }
+
+        /**
+         * Applies the buffered output and the final status; idempotent.
+         */
+        synchronized CodeExecution finish() {
+            if (!finished) {
+                finished = true;
+                if (!exited) {
+                    execution.markAsTimeout();
+                }
+                execution.setOutput(stdout.toString());
+                if (execution.getError() == null || stderr.length() > 0) {
+                    execution.setError(stderr.toString());
+                }
+                execution.setOutputTruncated(truncated);
+                execution.setExecutionTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+            return execution;
+        }
+
+        private String append(StringBuilder target, String chunk) {
+            int remaining = maxOutputChars - stdout.length() - stderr.length();
+            if (remaining <= 0) {
+                truncated = truncated || !chunk.isEmpty();
+                return null;
+            }
+            String accepted = chunk.length() <= remaining ? chunk : chunk.substring(0, remaining);
+            if (accepted.length() < chunk.length()) {
+                truncated = true;
+            }
+            target.append(accepted);
+            return accepted;
+        }
+    }
+}
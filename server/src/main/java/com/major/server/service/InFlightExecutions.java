@@ -0,0 +1,72 @@
+package com.major.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight registry for upstream executions. While a call for a given
+ * {@link ExecutionKey} is pending, identical calls subscribe to the same Mono
+ * instead of issuing their own request.
+ */
+@Component
+public class InFlightExecutions {
+
+    private final boolean enabled;
+    private final Map<ExecutionKey, Mono<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    public InFlightExecutions(@Value("${app.execution.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(ExecutionKey key, Supplier<Mono<T>> upstream) {
+        if (!enabled) {
+            return Mono.defer(() -> {
+                upstreamCalls.increment();
+                return upstream.get();
+            });
+        }
+
+        return Mono.defer(() -> {
+            AtomicReference<Mono<T>> created = new AtomicReference<>();
+            Mono<T> shared = (Mono<T>) inFlight.computeIfAbsent(key, k -> {
+                AtomicReference<Mono<T>> self = new AtomicReference<>();
+                Mono<T> call = upstream.get()
+                        .doFinally(signal -> inFlight.remove(k, self.get()))
+                        .cache();
+                self.set(call);
+                created.set(call);
+                return call;
+            });
+
+            if (created.get() == shared) {
+                upstreamCalls.increment();
+            } else {
+                coalescedCalls.increment();
+            }
+            return shared;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long upstream = upstreamCalls.sum();
+        long coalesced = coalescedCalls.sum();
+        long total = upstream + coalesced;
+        return Map.of(
+                "inFlight", inFlight.size(),
+                "upstreamCalls", upstream,
+                "coalescedCalls", coalesced,
+                "coalescingRatio", total == 0 ? 0.0 : (double) coalesced / total
+        );
+    }
+}
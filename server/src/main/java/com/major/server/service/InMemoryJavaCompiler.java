@@ -0,0 +1,151 @@
+package com.major.server.service;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a single Java source file with {@code javax.tools}, keeping the source
+ * and the generated class files in memory.
+ */
+class InMemoryJavaCompiler {
+
+    private static final Pattern PUBLIC_CLASS =
+            Pattern.compile("public\\s+(?:(?:final|abstract|sealed|strictfp)\\s+)*(?:class|record|enum|interface)\\s+(\\w+)");
+
+    private static final List<String> OPTIONS = List.of("-proc:none", "-g", "-Xlint:none");
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * False when running on a JRE without the compiler module.
+     */
+    boolean isAvailable() {
+        return compiler != null;
+    }
+
+    CompiledProgram compile(String source) {
+        String className = publicClassName(source);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> outputs = new LinkedHashMap<>();
+
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+             JavaFileManager fileManager = new MemoryFileManager(standard, outputs)) {
+            JavaFileObject file = new SourceFile(className, source);
+            StringWriter compilerOutput = new StringWriter();
+            boolean success = compiler.getTask(compilerOutput, fileManager, diagnostics, OPTIONS, null, List.of(file)).call();
+            if (!success) {
+                return CompiledProgram.failure(format(diagnostics, compilerOutput));
+            }
+        } catch (IOException e) {
+            return CompiledProgram.failure("Compilation failed: " + e.getMessage());
+        }
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        outputs.forEach((name, bytes) -> classes.put(name, bytes.toByteArray()));
+        return CompiledProgram.success(className, classes);
+    }
+
+    /**
+     * The file name javac expects: the public top-level type, or Main when there is none.
+     */
+    static String publicClassName(String source) {
+        Matcher matcher = PUBLIC_CLASS.matcher(source);
+        return matcher.find() ? matcher.group(1) : "Main";
+    }
+
+    private static String format(DiagnosticCollector<JavaFileObject> diagnostics, StringWriter compilerOutput) {
+        StringBuilder message = new StringBuilder(compilerOutput.toString());
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            String file = diagnostic.getSource() != null ? diagnostic.getSource().getName().substring(1) : "";
+            message.append(file).append(':').append(diagnostic.getLineNumber()).append(": error: ")
+                    .append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+        }
+        return message.toString();
+    }
+
+    /**
+     * Result of compiling one source: either the class files or the compiler's errors.
+     */
+    record CompiledProgram(String mainClass, Map<String, byte[]> classes, String errors) {
+
+        static CompiledProgram success(String mainClass, Map<String, byte[]> classes) {
+            return new CompiledProgram(mainClass, Map.copyOf(classes), null);
+        }
+
+        static CompiledProgram failure(String errors) {
+            return new CompiledProgram(null, Map.of(), errors);
+        }
+
+        boolean isSuccessful() {
+            return errors == null;
+        }
+
+        long estimatedSize() {
+            long size = 256 + (errors != null ? 2L * errors.length() : 0);
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                size += 2L * entry.getKey().length() + entry.getValue().length;
+            }
+            return size;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> outputs;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, ByteArrayOutputStream> outputs) {
+            super(fileManager);
+            this.outputs = outputs;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            URI uri = URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return outputs.computeIfAbsent(className, name -> new ByteArrayOutputStream());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.major.server.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rejects compiled snippets that reference APIs they have no business using in the
+ * in-JVM backend: reflection, class loading, processes, threads, files, sockets and
+ * JDK internals. Checks run over the class files' constant pools, which name every
+ * class, field and method the code can link against. This is a denylist against
+ * accidents and casual abuse, not a security boundary.
+ */
+final class JavaClassPolicy {
+
+    private static final List<String> DENIED_PACKAGES = List.of(
+            "java/lang/reflect/", "java/lang/invoke/", "java/lang/instrument/", "java/lang/management/",
+            "java/lang/module/", "java/io/File", "java/io/RandomAccessFile", "java/io/ObjectInputStream",
+            "java/nio/file/", "java/nio/channels/", "java/net/", "java/rmi/", "java/security/",
+            "java/util/concurrent/Executor", "java/util/concurrent/ForkJoin", "java/util/concurrent/CompletableFuture",
+            "java/util/concurrent/ThreadPoolExecutor", "java/util/concurrent/ScheduledThreadPoolExecutor",
+            "java/util/concurrent/ThreadFactory", "java/util/logging/", "java/util/prefs/", "java/util/jar/", "java/util/zip/",
+            "javax/", "sun/", "com/sun/", "jdk/", "org/"
+    );
+
+    private static final Set<String> DENIED_CLASSES = Set.of(
+            "java/lang/ClassLoader", "java/lang/Runtime", "java/lang/ProcessBuilder", "java/lang/Process",
+            "java/lang/ProcessHandle", "java/lang/Thread", "java/lang/ThreadGroup", "java/lang/InheritableThreadLocal",
+            "java/lang/SecurityManager", "java/lang/Module", "java/lang/ModuleLayer", "java/lang/StackWalker",
+            "java/io/Console", "java/io/FileDescriptor", "java/util/Timer", "java/util/TimerTask",
+            "java/lang/ref/Cleaner"
+    );
+
+    private static final Map<String, Set<String>> DENIED_METHODS = Map.of(
+            "java/lang/System", Set.of("exit", "setIn", "setOut", "setErr", "setProperty", "setProperties",
+                    "clearProperty", "getenv", "load", "loadLibrary", "setSecurityManager", "console",
+                    "inheritedChannel", "getLogger"),
+            "java/lang/Class", Set.of("forName", "getClassLoader", "getModule", "newInstance",
+                    "getMethod", "getMethods", "getDeclaredMethod", "getDeclaredMethods",
+                    "getField", "getFields", "getDeclaredField", "getDeclaredFields",
+                    "getConstructor", "getConstructors", "getDeclaredConstructor", "getDeclaredConstructors",
+                    "getRecordComponents", "getEnclosingMethod", "getEnclosingConstructor")
+    );
+
+    // Anything that hands work to other threads, which would outlive the run's time limit
+    private static final Set<String> DENIED_MEMBERS_ANY_OWNER = Set.of("parallel", "parallelStream");
+    // Likewise parallelSort, parallelPrefix and parallelSetAll, which run on the common pool
+    private static final Map<String, String> DENIED_MEMBER_PREFIXES = Map.of("java/util/Arrays", "parallel");
+
+    // Bootstrap methods javac emits for lambdas, string concatenation, records and switches
+    private static final Set<String> ALLOWED_BOOTSTRAP_OWNERS = Set.of(
+            "java/lang/invoke/LambdaMetafactory", "java/lang/invoke/StringConcatFactory",
+            "java/lang/runtime/ObjectMethods", "java/lang/runtime/SwitchBootstraps"
+    );
+
+    // Named by the class files of lambdas and records, but only usable through denied members
+    private static final Set<String> ALLOWED_CLASSES = Set.of(
+            "java/lang/invoke/MethodHandles$Lookup", "java/lang/invoke/MethodHandles",
+            "java/lang/invoke/MethodHandle", "java/lang/invoke/MethodType", "java/lang/invoke/CallSite",
+            "java/lang/invoke/TypeDescriptor", "java/lang/invoke/LambdaMetafactory",
+            "java/lang/invoke/StringConcatFactory", "java/lang/runtime/ObjectMethods",
+            "java/lang/runtime/SwitchBootstraps"
+    );
+
+    private static final int UTF8 = 1, INTEGER = 3, FLOAT = 4, LONG = 5, DOUBLE = 6, CLASS = 7, STRING = 8,
+            FIELD_REF = 9, METHOD_REF = 10, INTERFACE_METHOD_REF = 11, NAME_AND_TYPE = 12, METHOD_HANDLE = 15,
+            METHOD_TYPE = 16, DYNAMIC = 17, INVOKE_DYNAMIC = 18, MODULE = 19, PACKAGE = 20;
+
+    private JavaClassPolicy() {
+    }
+
+    /**
+     * @return a description of the first forbidden reference in any of the classes, or null
+     */
+    static String findViolation(Map<String, byte[]> classes) {
+        for (byte[] bytes : classes.values()) {
+            String violation;
+            try {
+                violation = findViolation(bytes);
+            } catch (IOException | RuntimeException e) {
+                return "unreadable class file";
+            }
+            if (violation != null) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    private static String findViolation(byte[] classFile) throws IOException {
+        ConstantPool pool = ConstantPool.read(classFile);
+
+        Set<Integer> bootstrapRefs = new HashSet<>();
+        for (int i = 1; i < pool.count; i++) {
+            if (pool.tags[i] == METHOD_HANDLE) {
+                bootstrapRefs.add(pool.second[i]);
+            }
+        }
+
+        for (int i = 1; i < pool.count; i++) {
+            switch (pool.tags[i]) {
+                case CLASS -> {
+                    String name = elementType(pool.utf8(pool.first[i]));
+                    if (!ALLOWED_CLASSES.contains(name) && isDenied(name)) {
+                        return name.replace('/', '.');
+                    }
+                }
+                case METHOD_REF, INTERFACE_METHOD_REF, FIELD_REF -> {
+                    String owner = elementType(pool.utf8(pool.first[pool.first[i]]));
+                    String member = pool.utf8(pool.first[pool.second[i]]);
+                    if (bootstrapRefs.contains(i) && ALLOWED_BOOTSTRAP_OWNERS.contains(owner)) {
+                        continue;
+                    }
+                    String deniedPrefix = DENIED_MEMBER_PREFIXES.get(owner);
+                    if (isDenied(owner) || DENIED_MEMBERS_ANY_OWNER.contains(member)
+                            || DENIED_METHODS.getOrDefault(owner, Set.of()).contains(member)
+                            || deniedPrefix != null && member.startsWith(deniedPrefix)) {
+                        return owner.replace('/', '.') + "." + member;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDenied(String className) {
+        if (DENIED_CLASSES.contains(className)) {
+            return true;
+        }
+        for (String prefix : DENIED_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Array class constants look like "[[Ljava/lang/Thread;"
+    private static String elementType(String name) {
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '[') {
+            start++;
+        }
+        if (start > 0 && name.charAt(start) == 'L' && name.endsWith(";")) {
+            return name.substring(start + 1, name.length() - 1);
+        }
+        return start > 0 ? "" : name;
+    }
+
+    /**
+     * Just enough of a class file parser to walk the constant pool.
+     */
+    private static final class ConstantPool {
+
+        private final int count;
+        private final int[] tags;
+        private final int[] first;
+        private final int[] second;
+        private final List<String> strings = new ArrayList<>();
+
+        private ConstantPool(int count) {
+            this.count = count;
+            this.tags = new int[count];
+            this.first = new int[count];
+            this.second = new int[count];
+        }
+
+        String utf8(int index) {
+            if (tags[index] != UTF8) {
+                throw new IllegalStateException("Constant " + index + " is not a UTF8 entry");
+            }
+            return strings.get(first[index]);
+        }
+
+        static ConstantPool read(byte[] classFile) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+
+            ConstantPool pool = new ConstantPool(in.readUnsignedShort());
+            for (int i = 1; i < pool.count; i++) {
+                int tag = in.readUnsignedByte();
+                pool.tags[i] = tag;
+                switch (tag) {
+                    case UTF8 -> {
+                        pool.first[i] = pool.strings.size();
+                        pool.strings.add(in.readUTF());
+                    }
+                    case INTEGER, FLOAT -> in.readInt();
+                    case LONG, DOUBLE -> {
+                        in.readLong();
+                        i++; // eight-byte constants take two slots
+                    }
+                    case CLASS, STRING, METHOD_TYPE, MODULE, PACKAGE -> pool.first[i] = in.readUnsignedShort();
+                    case FIELD_REF, METHOD_REF, INTERFACE_METHOD_REF, NAME_AND_TYPE, DYNAMIC, INVOKE_DYNAMIC -> {
+                        pool.first[i] = in.readUnsignedShort();
+                        pool.second[i] = in.readUnsignedShort();
+                    }
+                    case METHOD_HANDLE -> {
+                        pool.first[i] = in.readUnsignedByte();
+                        pool.second[i] = in.readUnsignedShort();
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.major.server.service;
+
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs Java snippets inside this JVM: sources are compiled in memory with
+ * {@code javax.tools} and the class files are cached by source hash, so re-running
+ * an unchanged snippet skips javac entirely. Each run loads the classes into a
+ * fresh classloader (fresh static state, no view of the server's classes) on a
+ * dedicated thread pool, with stdin/stdout/stderr routed per thread. A watchdog
+ * enforces the time limit and a per-run allocation budget by interrupting and then
+ * stopping the thread. {@link JavaClassPolicy} rejects code that references
+ * reflection, threads, files, sockets and the like; that is a guard rail, not a
+ * sandbox, so only enable this for code you would run in-process anyway.
+ */
+@Slf4j
+@Component
+@Order(1)
+public class JavaExecutionBackend implements ExecutionBackend {
+
+    private static final String LANGUAGE = "java";
+    private static final long WATCHDOG_INTERVAL_MS = 10;
+    // Time an interrupted program gets to return on its own before its thread is stopped
+    private static final long STOP_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Programs can catch ThreadDeath; after this many stops the thread is given up on
+    private static final int MAX_STOPS = 3;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final boolean enabled;
+    private final int threads;
+    private final int queueCapacity;
+    private final long stackSizeBytes;
+    private final long timeoutMs;
+    private final long maxAllocatedBytes;
+    private final int maxOutputBytes;
+
+    private final InMemoryJavaCompiler compiler = new InMemoryJavaCompiler();
+    private final WeightedLruCache<String, InMemoryJavaCompiler.CompiledProgram> compiledPrograms;
+    private final String javaVersion = Runtime.version().toString();
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService watchdog;
+
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder memoryKills = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final AtomicInteger strandedThreads = new AtomicInteger();
+
+    public JavaExecutionBackend(
+            @Value("${app.execution.java.enabled:false}") boolean enabled,
+            @Value("${app.execution.java.threads:2}") int threads,
+            @Value("${app.execution.java.queue-capacity:32}") int queueCapacity,
+            @Value("${app.execution.java.stack-size-bytes:16777216}") long stackSizeBytes,
+            @Value("${app.execution.java.timeout-ms:5000}") long timeoutMs,
+            @Value("${app.execution.java.max-allocated-bytes:536870912}") long maxAllocatedBytes,
+            @Value("${app.execution.java.max-output-bytes:65536}") int maxOutputBytes,
+            @Value("${app.execution.java.cache.max-entries:1000}") long cacheMaxEntries,
+            @Value("${app.execution.java.cache.max-bytes:33554432}") long cacheMaxBytes) {
+        this.enabled = enabled;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.stackSizeBytes = stackSizeBytes;
+        this.timeoutMs = timeoutMs;
+        this.maxAllocatedBytes = maxAllocatedBytes;
+        this.maxOutputBytes = maxOutputBytes;
+        this.compiledPrograms = new WeightedLruCache<>(cacheMaxEntries, cacheMaxBytes, 0,
+                InMemoryJavaCompiler.CompiledProgram::estimatedSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!compiler.isAvailable()) {
+            log.warn("In-JVM Java backend is enabled but no system Java compiler is available; Java runs on Piston");
+            return;
+        }
+        ThreadRoutedStreams.install();
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> {
+                    // Deep recursion is common in snippets, hence the explicit stack size
+                    Thread thread = new Thread(null, task, "java-exec-" + counter.incrementAndGet(), stackSizeBytes);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "java-exec-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "java";
+    }
+
+    @Override
+    public boolean supports(PistonRuntime runtime) {
+        // Threads stuck in programs that could not be stopped are lost for good
+        return executor != null && LANGUAGE.equals(runtime.language()) && strandedThreads.get() < threads;
+    }
+
+    @Override
+    public Mono<PistonExecuteResponse> execute(PistonRuntime runtime, String code, String stdin) {
+        return Mono.defer(() -> {
+            if (executor == null) {
+                return Mono.error(new UnsupportedLanguageException(runtime.language()));
+            }
+            CompletableFuture<PistonExecuteResponse> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> compileAndRun(code, stdin, result));
+            } catch (RejectedExecutionException e) {
+                rejections.increment();
+                return Mono.error(new ExecutionRejectedException("Too many Java executions in progress"));
+            }
+            return Mono.fromFuture(result);
+        });
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", executor != null);
+        stats.put("compilations", compilations.sum());
+        stats.put("classCache", compiledPrograms.stats());
+        stats.put("runs", runs.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("memoryLimitKills", memoryKills.sum());
+        stats.put("rejected", rejections.sum());
+        stats.put("strandedThreads", strandedThreads.get());
+        if (executor != null) {
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+        }
+        return stats;
+    }
+
+    private void compileAndRun(String code, String stdin, CompletableFuture<PistonExecuteResponse> result) {
+        try {
+            InMemoryJavaCompiler.CompiledProgram program = compiledProgram(code);
+            if (!program.isSuccessful()) {
+                result.complete(new PistonExecuteResponse(LANGUAGE, javaVersion,
+                        new PistonExecuteResponse.Stage("", program.errors(), 1, null, false), null));
+                return;
+            }
+            PistonExecuteResponse.Stage compile = new PistonExecuteResponse.Stage("", "", 0, null, false);
+            result.complete(new PistonExecuteResponse(LANGUAGE, javaVersion, compile, run(program, stdin, result)));
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            ThreadRoutedStreams.clear();
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Compiled classes for {@code code}, from the cache when the same source was seen
+     * before. Policy violations are cached like compile errors.
+     */
+    InMemoryJavaCompiler.CompiledProgram compiledProgram(String code) {
+        String hash = ContentHash.sha256Hex(code);
+        InMemoryJavaCompiler.CompiledProgram program = compiledPrograms.get(hash);
+        if (program != null) {
+            return program;
+        }
+
+        compilations.increment();
+        program = compiler.compile(code);
+        if (program.isSuccessful()) {
+            String violation = JavaClassPolicy.findViolation(program.classes());
+            if (violation != null) {
+                program = InMemoryJavaCompiler.CompiledProgram.failure(
+                        program.mainClass() + ".java: error: " + violation + " is not available in this environment\n");
+            }
+        }
+        compiledPrograms.put(hash, program);
+        return program;
+    }
+
+    private PistonExecuteResponse.Stage run(InMemoryJavaCompiler.CompiledProgram program, String stdin,
+                                            CompletableFuture<PistonExecuteResponse> result) {
+        runs.increment();
+        CapturedOutput output = new CapturedOutput(maxOutputBytes);
+        byte[] input = stdin != null ? stdin.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ThreadRoutedStreams.route(output.stdout(), output.stderr(), new ByteArrayInputStream(input));
+
+        RunControl control = new RunControl(Thread.currentThread(), result);
+        control.schedule = watchdog.scheduleAtFixedRate(control, WATCHDOG_INTERVAL_MS, WATCHDOG_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        Integer exitCode = 0;
+        try {
+            Method main = mainMethod(program);
+            main.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            if (!(e.getCause() instanceof ThreadDeath) && control.killReason == null) {
+                printUncaught(e.getCause(), program.classes().keySet(), output.stderrPrinter());
+                exitCode = 1;
+            }
+        } catch (ThreadDeath e) {
+            // Stopped by the watchdog; reported below
+        } catch (ReflectiveOperationException | LinkageError e) {
+            output.stderrPrinter().println("error: " + e);
+            exitCode = 1;
+        } finally {
+            control.finish();
+        }
+
+        String reason = control.killReason;
+        if (reason != null) {
+            (reason.equals(RunControl.TIMEOUT) ? timeouts : memoryKills).increment();
+            return output.stage(null, "SIGKILL", reason);
+        }
+        return output.stage(exitCode, null, null);
+    }
+
+    private static Method mainMethod(InMemoryJavaCompiler.CompiledProgram program) throws ReflectiveOperationException {
+        ClassLoader loader = new ProgramClassLoader(program.classes());
+        if (program.classes().containsKey(program.mainClass())) {
+            Method main = findMain(loader.loadClass(program.mainClass()));
+            if (main != null) {
+                return main;
+            }
+        }
+        for (String name : program.classes().keySet()) {
+            Method main = findMain(loader.loadClass(name));
+            if (main != null) {
+                return main;
+            }
+        }
+        throw new NoSuchMethodException("no class declares public static void main(String[])");
+    }
+
+    private static Method findMain(Class<?> type) {
+        try {
+            Method main = type.getDeclaredMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                return null;
+            }
+            // Snippets often declare a package-private class Main
+            main.setAccessible(true);
+            return main;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Prints the exception the way the {@code java} launcher would, without the
+     * frames of this backend and the reflection that called main.
+     */
+    static void printUncaught(Throwable error, Set<String> programClasses, PrintStream err) {
+        err.print("Exception in thread \"main\" ");
+        String prefix = "";
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            err.println(prefix + current);
+            for (StackTraceElement frame : current.getStackTrace()) {
+                if (programClasses.contains(frame.getClassName())) {
+                    err.println("\tat " + frame);
+                }
+            }
+            prefix = "Caused by: ";
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes(Thread thread) {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(thread.getId()) : -1;
+    }
+
+    /**
+     * Watchdog for one run. Ticks every {@link #WATCHDOG_INTERVAL_MS}; once the run is
+     * over its time or allocation budget the thread is interrupted, and stopped if it
+     * has not returned after a short grace period, repeatedly if the program swallows
+     * ThreadDeath. All state changes happen under the monitor so that a stop can never
+     * be issued after the run has finished.
+     */
+    private final class RunControl implements Runnable {
+
+        static final String TIMEOUT = "Time limit exceeded";
+        static final String MEMORY = "Memory limit exceeded";
+
+        private final Thread thread;
+        private final CompletableFuture<PistonExecuteResponse> result;
+        private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        private final long allocatedAtStart;
+        private ScheduledFuture<?> schedule;
+        private volatile String killReason;
+        private long killedAt;
+        private int stops;
+        private volatile boolean done;
+
+        RunControl(Thread thread, CompletableFuture<PistonExecuteResponse> result) {
+            this.thread = thread;
+            this.result = result;
+            this.allocatedAtStart = allocatedBytes(thread);
+        }
+
+        @Override
+        public synchronized void run() {
+            if (done) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (killReason == null) {
+                if (now > deadline) {
+                    kill(TIMEOUT, now);
+                } else if (allocatedAtStart >= 0 && allocatedBytes(thread) - allocatedAtStart > maxAllocatedBytes) {
+                    kill(MEMORY, now);
+                }
+            } else if (now - killedAt > STOP_GRACE_NANOS * (stops + 1)) {
+                if (stops++ < MAX_STOPS) {
+                    stop();
+                } else {
+                    abandon();
+                }
+            }
+        }
+
+        private void kill(String reason, long now) {
+            killReason = reason;
+            killedAt = now;
+            thread.interrupt();
+        }
+
+        @SuppressWarnings({"deprecation", "removal"})
+        private void stop() {
+            try {
+                thread.stop();
+            } catch (UnsupportedOperationException e) {
+                // Thread.stop is gone on newer JDKs
+                abandon();
+            }
+        }
+
+        /**
+         * Answers the caller without waiting for the program and writes its thread off.
+         */
+        private void abandon() {
+            int stranded = strandedThreads.incrementAndGet();
+            log.error("Could not stop runaway Java program on {} ({} of {} threads lost)",
+                    thread.getName(), stranded, threads);
+            done = true;
+            schedule.cancel(false);
+            result.complete(new PistonExecuteResponse(LANGUAGE, javaVersion,
+                    new PistonExecuteResponse.Stage("", "", 0, null, false),
+                    new PistonExecuteResponse.Stage("", killReason, null, "SIGKILL", false)));
+        }
+
+        void finish() {
+            while (!done) {
+                try {
+                    synchronized (this) {
+                        done = true;
+                    }
+                } catch (ThreadDeath pending) {
+                    // A stop issued just before the program returned
+                }
+            }
+            schedule.cancel(false);
+        }
+    }
+
+    /**
+     * stdout and stderr of one run, sharing a byte budget.
+     */
+    private static final class CapturedOutput {
+
+        private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        private final PrintStream stderrPrinter;
+        private int remaining;
+        private boolean truncated;
+
+        CapturedOutput(int maxBytes) {
+            this.remaining = maxBytes;
+            this.stderrPrinter = new PrintStream(stderr(), true, StandardCharsets.UTF_8);
+        }
+
+        OutputStream stdout() {
+            return bounded(stdout);
+        }
+
+        OutputStream stderr() {
+            return bounded(stderr);
+        }
+
+        PrintStream stderrPrinter() {
+            return stderrPrinter;
+        }
+
+        private OutputStream bounded(ByteArrayOutputStream target) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    synchronized (CapturedOutput.this) {
+                        int accepted = Math.min(len, remaining);
+                        target.write(b, off, accepted);
+                        remaining -= accepted;
+                        truncated |= accepted < len;
+                    }
+                }
+            };
+        }
+
+        synchronized PistonExecuteResponse.Stage stage(Integer code, String signal, String message) {
+            String err = stderr.toString(StandardCharsets.UTF_8);
+            if (message != null) {
+                err = err.isEmpty() || err.endsWith("\n") ? err + message : err + "\n" + message;
+            }
+            return new PistonExecuteResponse.Stage(stdout.toString(StandardCharsets.UTF_8), err, code, signal,
+                    truncated);
+        }
+    }
+
+    /**
+     * Defines a program's classes from memory. Its parent is the platform loader,
+     * so programs see the JDK but none of the server's classes.
+     */
+    private static final class ProgramClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        ProgramClassLoader(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
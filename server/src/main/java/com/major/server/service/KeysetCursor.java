@@ -0,0 +1,66 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a listing sorted by {@code (sort key, _id)} descending: the sort
+ * key and id of the last item on the previous page. Handed to clients as an
+ * opaque URL-safe string; the key is kept as text and read back as the type the
+ * listing sorts by.
+ */
+record KeysetCursor(String key, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    static KeysetCursor of(Object key, String id) {
+        return new KeysetCursor(String.valueOf(key), id);
+    }
+
+    static KeysetCursor after(CodeExecution execution) {
+        return of(execution.getExecutedAt(), execution.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException when the key is not a date-time
+     */
+    LocalDateTime keyAsDateTime() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the key is not a number
+     */
+    long keyAsLong() {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    String encode() {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when {@code cursor} was not produced by {@link #encode}
+     */
+    static KeysetCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.lastIndexOf(SEPARATOR);
+        if (separator <= 0 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return new KeysetCursor(raw.substring(0, separator), raw.substring(separator + 1));
+    }
+}
@@ -0,0 +1,78 @@
+package com.major.server.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of non-negative values (milliseconds here), in the
+ * style of HdrHistogram: values below {@code 2 * SUB_BUCKETS} get their own bucket,
+ * larger ones share buckets of {@code SUB_BUCKETS} linear steps per power of two,
+ * which bounds the relative error of any quantile at about 3%. Values above
+ * {@link #MAX_VALUE} are clamped.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_VALUE = 3_600_000; // one hour
+    public static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long value) {
+        counts.incrementAndGet(index(value));
+    }
+
+    /**
+     * A copy of the bucket counts, indexed like {@link #index}.
+     */
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    static int index(long value) {
+        long clamped = Math.min(Math.max(value, 0), MAX_VALUE);
+        if (clamped < 2 * SUB_BUCKETS) {
+            return (int) clamped;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (clamped >> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Largest value that lands in bucket {@code index}.
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Value at quantile {@code q} (0..1) of a bucket-count snapshot, or 0 when it is empty.
+     */
+    public static long valueAtQuantile(long[] counts, double q) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(counts.length - 1);
+    }
+}
@@ -0,0 +1,203 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs short programs on this machine, on pools of warm interpreter processes
+ * (see {@code resources/local-harness}), so a run costs neither a network round
+ * trip nor interpreter start-up. Python forks each run from a warm interpreter
+ * with CPU, memory and file-size rlimits; JavaScript runs in a vm context of a
+ * Node process that was started ahead of time and serves that one run only,
+ * since a vm context is easy to escape into the worker itself. Neither is a
+ * security boundary against the host on its own: set
+ * {@code command-prefix} to a sandbox wrapper (nsjail, bwrap, ...) before
+ * enabling this for untrusted code.
+ */
+@Slf4j
+@Component
+@Order(0)
+public class LocalExecutionBackend implements ExecutionBackend {
+
+    private static final Map<String, String> HARNESSES = Map.of(
+            "python", "python_harness.py",
+            "javascript", "node_harness.js"
+    );
+
+    private static final Map<String, String> DEFAULT_COMMANDS = Map.of(
+            "python", "python3",
+            "javascript", "node --max-old-space-size=256"
+    );
+
+    // Harnesses that run programs inside the worker process rather than a child of it
+    private static final Set<String> SINGLE_RUN_LANGUAGES = Set.of("javascript");
+
+    // Extra time for the harness to report after its own deadline before the worker is killed
+    private static final long GRACE_MS = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final Map<String, LocalWorkerPool> pools = new LinkedHashMap<>();
+    private Scheduler scheduler;
+
+    @Value("${app.execution.local.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.execution.local.languages:python,javascript}")
+    private String[] languages;
+
+    @Value("${app.execution.local.command-prefix:}")
+    private String commandPrefix;
+
+    @Value("${app.execution.local.workers-per-language:4}")
+    private int workersPerLanguage;
+
+    @Value("${app.execution.local.max-runs-per-worker:200}")
+    private int maxRunsPerWorker;
+
+    @Value("${app.execution.local.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${app.execution.local.start-timeout-ms:10000}")
+    private long startTimeoutMs;
+
+    @Value("${app.execution.local.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${app.execution.local.cpu-seconds:5}")
+    private int cpuSeconds;
+
+    @Value("${app.execution.local.memory-bytes:268435456}")
+    private long memoryBytes;
+
+    @Value("${app.execution.local.max-output-bytes:65536}")
+    private int maxOutputBytes;
+
+    public LocalExecutionBackend(ObjectMapper objectMapper, Environment environment) {
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Worker I/O blocks, so it gets its own threads: one per worker is enough
+        scheduler = Schedulers.newBoundedElastic(
+                Math.max(1, workersPerLanguage * languages.length), 1000, "local-exec");
+
+        Path harnessDir = Files.createTempDirectory("local-harness");
+        harnessDir.toFile().deleteOnExit();
+        for (String language : languages) {
+            String harness = HARNESSES.get(language);
+            if (harness == null) {
+                log.warn("No local harness for language {}; it will run on Piston", language);
+                continue;
+            }
+            int runsPerWorker = SINGLE_RUN_LANGUAGES.contains(language) ? 1 : maxRunsPerWorker;
+            LocalWorkerPool pool = new LocalWorkerPool(language, command(language, extract(harness, harnessDir)),
+                    objectMapper, scheduler, workersPerLanguage, runsPerWorker, acquireTimeoutMs, startTimeoutMs);
+            pool.start();
+            pools.put(language, pool);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(LocalWorkerPool::close);
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public boolean supports(PistonRuntime runtime) {
+        LocalWorkerPool pool = pools.get(runtime.language());
+        return pool != null && pool.isAvailable();
+    }
+
+    @Override
+    public Mono<PistonExecuteResponse> execute(PistonRuntime runtime, String code, String stdin) {
+        LocalWorkerPool pool = pools.get(runtime.language());
+        if (pool == null) {
+            return Mono.error(new UnsupportedLanguageException(runtime.language()));
+        }
+        return Mono.fromCallable(() -> pool.execute(job(code, stdin), timeoutMs + GRACE_MS))
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        pools.forEach((language, pool) -> stats.put(language, pool.stats()));
+        return stats;
+    }
+
+    private String job(String code, String stdin) throws JsonProcessingException {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("code", code);
+        job.put("stdin", stdin);
+        job.put("timeoutMs", timeoutMs);
+        job.put("cpuSeconds", cpuSeconds);
+        job.put("memoryBytes", memoryBytes);
+        job.put("maxOutputBytes", maxOutputBytes);
+        // Serialised on a single line, which the harness protocol relies on
+        return objectMapper.writeValueAsString(job);
+    }
+
+    private List<String> command(String language, Path harness) {
+        String configured = environment.getProperty(
+                "app.execution.local." + language + ".command", DEFAULT_COMMANDS.get(language));
+        List<String> command = new ArrayList<>();
+        if (!commandPrefix.isBlank()) {
+            command.addAll(Arrays.asList(commandPrefix.trim().split("\\s+")));
+        }
+        command.addAll(Arrays.asList(configured.trim().split("\\s+")));
+        command.add(harness.toString());
+        return command;
+    }
+
+    private static Path extract(String harness, Path directory) {
+        Path target = directory.resolve(harness);
+        try (InputStream in = new ClassPathResource("local-harness/" + harness).getInputStream()) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to extract " + harness, e);
+        }
+        target.toFile().deleteOnExit();
+        return target;
+    }
+}
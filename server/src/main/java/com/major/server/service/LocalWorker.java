@@ -0,0 +1,103 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One warm interpreter process running a harness script from
+ * {@code resources/local-harness}. Jobs and results are exchanged as one JSON
+ * document per line over the process's stdin and stdout. All methods block and
+ * must run on the local backend's scheduler.
+ */
+class LocalWorker {
+
+    private final Process process;
+    private final BufferedWriter input;
+    private final BufferedReader output;
+    private final ObjectMapper objectMapper;
+    private final String version;
+    private int runs;
+
+    private LocalWorker(Process process, ObjectMapper objectMapper, String version,
+                        BufferedWriter input, BufferedReader output) {
+        this.process = process;
+        this.objectMapper = objectMapper;
+        this.version = version;
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Starts the process and waits for the harness to report that it is ready.
+     */
+    static LocalWorker start(List<String> command, ObjectMapper objectMapper, long startTimeoutMs) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedWriter input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+        Disposable watchdog = Schedulers.parallel().schedule(process::destroyForcibly, startTimeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            String ready = output.readLine();
+            if (ready == null) {
+                throw new IOException("Worker exited during start-up: " + String.join(" ", command));
+            }
+            JsonNode message = objectMapper.readTree(ready);
+            return new LocalWorker(process, objectMapper, message.path("version").asText("unknown"), input, output);
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw e;
+        } finally {
+            watchdog.dispose();
+        }
+    }
+
+    /**
+     * Sends one job and reads its result. The process is killed if no result
+     * arrives within {@code limitMs}, which surfaces here as an IOException.
+     */
+    JsonNode run(String jobJson, long limitMs) throws IOException {
+        runs++;
+        Disposable watchdog = Schedulers.parallel().schedule(process::destroyForcibly, limitMs, TimeUnit.MILLISECONDS);
+        try {
+            input.write(jobJson);
+            input.newLine();
+            input.flush();
+            String result = output.readLine();
+            if (result == null) {
+                throw new IOException("Worker exited before returning a result");
+            }
+            return objectMapper.readTree(result);
+        } finally {
+            watchdog.dispose();
+        }
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    int getRuns() {
+        return runs;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,153 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.PistonExecuteResponse;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size pool of warm workers for one language. A worker is replaced after
+ * {@code maxRunsPerWorker} runs, or as soon as it misbehaves (crash, protocol
+ * error, missed deadline); replacements start in the background.
+ */
+@Slf4j
+class LocalWorkerPool {
+
+    private final String language;
+    private final List<String> command;
+    private final ObjectMapper objectMapper;
+    private final Scheduler scheduler;
+    private final int size;
+    private final int maxRunsPerWorker;
+    private final long acquireTimeoutMs;
+    private final long startTimeoutMs;
+
+    private final BlockingQueue<LocalWorker> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private volatile String version;
+    private volatile boolean closed;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder recycled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    LocalWorkerPool(String language, List<String> command, ObjectMapper objectMapper, Scheduler scheduler,
+                    int size, int maxRunsPerWorker, long acquireTimeoutMs, long startTimeoutMs) {
+        this.language = language;
+        this.command = command;
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.size = size;
+        this.maxRunsPerWorker = maxRunsPerWorker;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.startTimeoutMs = startTimeoutMs;
+    }
+
+    /**
+     * Starts every worker; blocks until they are ready or have failed to start.
+     */
+    void start() {
+        for (int i = 0; i < size; i++) {
+            spawn();
+        }
+        log.info("Started {}/{} local {} workers", live.get(), size, language);
+    }
+
+    boolean isAvailable() {
+        return !closed && live.get() > 0;
+    }
+
+    /**
+     * Runs one job on an idle worker, waiting up to {@code acquireTimeoutMs} for one.
+     *
+     * @throws ExecutionRejectedException when every worker stays busy
+     */
+    PistonExecuteResponse execute(String jobJson, long limitMs) throws IOException, InterruptedException {
+        LocalWorker worker = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        if (worker == null) {
+            rejected.increment();
+            throw new ExecutionRejectedException("Local " + language + " workers are busy, try again later");
+        }
+
+        boolean healthy = false;
+        try {
+            JsonNode result = worker.run(jobJson, limitMs);
+            healthy = true;
+            runs.increment();
+            return toResponse(result, worker.getVersion());
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    void close() {
+        closed = true;
+        LocalWorker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.destroy();
+            live.decrementAndGet();
+        }
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "version", version != null ? version : "unknown",
+                "workers", live.get(),
+                "idle", idle.size(),
+                "runs", runs.sum(),
+                "recycled", recycled.sum(),
+                "rejected", rejected.sum()
+        );
+    }
+
+    private void release(LocalWorker worker, boolean healthy) {
+        if (!closed && healthy && worker.isAlive() && worker.getRuns() < maxRunsPerWorker) {
+            idle.offer(worker);
+            return;
+        }
+        worker.destroy();
+        live.decrementAndGet();
+        recycled.increment();
+        if (!closed) {
+            scheduler.schedule(this::spawn);
+        }
+    }
+
+    private void spawn() {
+        try {
+            LocalWorker worker = LocalWorker.start(command, objectMapper, startTimeoutMs);
+            version = worker.getVersion();
+            live.incrementAndGet();
+            if (closed) {
+                worker.destroy();
+                live.decrementAndGet();
+                return;
+            }
+            idle.offer(worker);
+        } catch (IOException e) {
+            log.error("Failed to start local {} worker: {}", language, e.getMessage());
+        }
+    }
+
+    private PistonExecuteResponse toResponse(JsonNode result, String workerVersion) {
+        JsonNode code = result.path("code");
+        PistonExecuteResponse.Stage run = new PistonExecuteResponse.Stage(
+                result.path("stdout").asText(""),
+                result.path("stderr").asText(""),
+                code.isNumber() ? code.asInt() : null,
+                result.path("signal").isTextual() ? result.path("signal").asText() : null,
+                result.path("truncated").asBoolean(false)
+        );
+        return new PistonExecuteResponse(language, workerVersion, null, run);
+    }
+}
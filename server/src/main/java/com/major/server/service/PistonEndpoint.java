@@ -0,0 +1,83 @@
+package com.major.server.service;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One Piston instance behind the {@link PistonLoadBalancer}, with its in-flight
+ * request count and health state.
+ */
+public class PistonEndpoint {
+
+    private final String baseUrl;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger consecutiveProbeSuccesses = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean healthy = true;
+
+    public PistonEndpoint(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+        requests.increment();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * @return true when this failure ejected the endpoint
+     */
+    boolean recordFailure(int failureThreshold) {
+        failures.increment();
+        consecutiveProbeSuccesses.set(0);
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && healthy) {
+            healthy = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true when this probe readmitted the endpoint
+     */
+    boolean recordProbeSuccess(int recoveryThreshold) {
+        consecutiveFailures.set(0);
+        if (consecutiveProbeSuccesses.incrementAndGet() >= recoveryThreshold && !healthy) {
+            healthy = true;
+            return true;
+        }
+        return false;
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "healthy", healthy,
+                "outstanding", outstanding.get(),
+                "requests", requests.sum(),
+                "failures", failures.sum()
+        );
+    }
+}
@@ -0,0 +1,198 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.major.server.config.PistonConnectionPoolMetrics;
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs programs on the remote Piston instances, behind the load balancer, the
+ * circuit breaker and the adaptive concurrency limit, hedging slow calls to a
+ * second instance when enabled. Supports every runtime, so it is the fallback
+ * when no other backend claims one. Streamed runs go through the same guards.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class PistonExecutionBackend implements ExecutionBackend {
+
+    private final WebClient pistonWebClient;
+    private final PistonConnectionPoolMetrics pistonPoolMetrics;
+    private final PistonLoadBalancer pistonLoadBalancer;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final PistonResponseDecoder pistonResponseDecoder;
+    private final PistonRequestHedger pistonRequestHedger;
+    private final PistonStreamingClient pistonStreamingClient;
+
+    @Value("${app.piston.api.timeout:10000}")
+    private int timeoutMs;
+
+    @Override
+    public String name() {
+        return "piston";
+    }
+
+    @Override
+    public boolean supports(PistonRuntime runtime) {
+        return true;
+    }
+
+    @Override
+    public Mono<PistonExecuteResponse> execute(PistonRuntime runtime, String code, String stdin) {
+        Map<String, Object> pistonRequest = new LinkedHashMap<>();
+        pistonRequest.put("language", runtime.language());
+        pistonRequest.put("version", runtime.version());
+        pistonRequest.put("files", List.of(Map.of("content", code)));
+        if (stdin != null) {
+            pistonRequest.put("stdin", stdin);
+        }
+
+        return Mono.defer(() -> {
+                    AtomicReference<PistonEndpoint> primaryEndpoint = new AtomicReference<>();
+                    Mono<PistonExecuteResponse> primary = guarded(pistonLoadBalancer.execute(endpoint -> {
+                        primaryEndpoint.set(endpoint);
+                        return post(endpoint, pistonRequest);
+                    }));
+                    // Built lazily: the hedge goes to a different instance than the primary, if there is one
+                    Mono<PistonExecuteResponse> hedge = Mono.defer(() -> guarded(pistonLoadBalancer.execute(
+                            endpoint -> post(endpoint, pistonRequest), primaryEndpoint.get())));
+                    return pistonRequestHedger.execute(runtime.language(), primary,
+                            () -> pistonLoadBalancer.choose(primaryEndpoint.get()) != null, hedge);
+                })
+                .onErrorMap(WebClientResponseException.class, ex ->
+                    new RuntimeException("Piston API error: " + ex.getResponseBodyAsString(), ex))
+                .onErrorMap(TimeoutException.class, ex ->
+                    new RuntimeException("Code execution timed out", ex));
+    }
+
+    /**
+     * Runs a program through Piston's interactive API, emitting its messages as they
+     * arrive. Only Piston can stream, so this is not part of {@link ExecutionBackend};
+     * streams are not hedged.
+     */
+    public Flux<JsonNode> stream(PistonRuntime runtime, String code) {
+        return guardedMany(pistonLoadBalancer.executeMany(endpoint ->
+                pistonStreamingClient.run(endpoint, runtime.language(), runtime.version(), code)));
+    }
+
+    private Mono<PistonExecuteResponse> post(PistonEndpoint endpoint, Map<String, Object> pistonRequest) {
+        return pistonWebClient
+                .post()
+                .uri(endpoint.getBaseUrl() + "/execute")
+                .bodyValue(pistonRequest)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .as(pistonResponseDecoder::decode)
+                .timeout(Duration.ofMillis(timeoutMs));
+    }
+
+    /**
+     * Runs a Piston call behind the circuit breaker and the adaptive concurrency
+     * limit. Calls that are not admitted fail fast with {@link ExecutionRejectedException}.
+     */
+    private <T> Mono<T> guarded(Mono<T> call) {
+        return Mono.defer(() -> {
+            ExecutionRejectedException rejection = admit();
+            if (rejection != null) {
+                return Mono.error(rejection);
+            }
+
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(result -> {
+                        concurrencyLimiter.onSuccess(System.nanoTime() - start);
+                        circuitBreaker.onSuccess();
+                    })
+                    .doOnError(error -> {
+                        if (PistonLoadBalancer.isUpstreamFailure(error)) {
+                            concurrencyLimiter.onDropped();
+                            circuitBreaker.onError();
+                        } else {
+                            concurrencyLimiter.onSuccess(System.nanoTime() - start);
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        concurrencyLimiter.onIgnored();
+                        circuitBreaker.releasePermission();
+                    });
+        });
+    }
+
+    /**
+     * As {@link #guarded}, except that a stream lasts as long as the program runs,
+     * which says nothing about Piston's latency, so it never adjusts the limit on success.
+     */
+    private <T> Flux<T> guardedMany(Flux<T> call) {
+        return Flux.defer(() -> {
+            ExecutionRejectedException rejection = admit();
+            if (rejection != null) {
+                return Flux.error(rejection);
+            }
+
+            return call
+                    .doOnComplete(() -> {
+                        concurrencyLimiter.onIgnored();
+                        circuitBreaker.onSuccess();
+                    })
+                    .doOnError(error -> {
+                        if (PistonLoadBalancer.isUpstreamFailure(error)) {
+                            concurrencyLimiter.onDropped();
+                            circuitBreaker.onError();
+                        } else {
+                            concurrencyLimiter.onIgnored();
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        concurrencyLimiter.onIgnored();
+                        circuitBreaker.releasePermission();
+                    });
+        });
+    }
+
+    /**
+     * Takes a circuit breaker permission and a concurrency slot.
+     *
+     * @return why the call is not admitted, or null when it is
+     */
+    private ExecutionRejectedException admit() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return new ExecutionRejectedException("Execution service is unavailable, try again later");
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            circuitBreaker.releasePermission();
+            return new ExecutionRejectedException("Execution service is at capacity, try again later");
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool", pistonPoolMetrics.stats());
+        stats.put("endpoints", pistonLoadBalancer.stats());
+        stats.put("concurrencyLimiter", concurrencyLimiter.stats());
+        stats.put("circuitBreaker", circuitBreaker.stats());
+        stats.put("hedging", pistonRequestHedger.stats());
+        return stats;
+    }
+}
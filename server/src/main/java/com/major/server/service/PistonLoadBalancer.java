@@ -0,0 +1,202 @@
+package com.major.server.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Client-side balancer over the configured Piston instances. Requests go to the
+ * less loaded of two randomly picked healthy endpoints (power of two choices).
+ * Endpoints are ejected after repeated failures and readmitted once periodic
+ * probes of {@code /runtimes} succeed again.
+ */
+@Slf4j
+@Component
+public class PistonLoadBalancer {
+
+    private final WebClient pistonWebClient;
+    private final List<PistonEndpoint> endpoints;
+    private final int failureThreshold;
+    private final int recoveryThreshold;
+    private final Duration probeTimeout;
+
+    public PistonLoadBalancer(
+            WebClient pistonWebClient,
+            @Value("${app.piston.api.urls:${app.piston.api.url}}") String[] urls,
+            @Value("${app.piston.health.failure-threshold:3}") int failureThreshold,
+            @Value("${app.piston.health.recovery-threshold:2}") int recoveryThreshold,
+            @Value("${app.piston.health.timeout-ms:2000}") long probeTimeoutMs) {
+        this.pistonWebClient = pistonWebClient;
+        this.endpoints = Arrays.stream(urls)
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(PistonEndpoint::new)
+                .toList();
+        this.failureThreshold = failureThreshold;
+        this.recoveryThreshold = recoveryThreshold;
+        this.probeTimeout = Duration.ofMillis(probeTimeoutMs);
+
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("At least one Piston endpoint must be configured");
+        }
+    }
+
+    /**
+     * Runs {@code call} against a chosen endpoint, tracking it as outstanding
+     * until the returned Mono terminates or is cancelled.
+     */
+    public <T> Mono<T> execute(Function<PistonEndpoint, Mono<T>> call) {
+        return execute(call, null);
+    }
+
+    /**
+     * Like {@link #execute(Function)}, on a healthy endpoint other than
+     * {@code exclude}. Completes empty when there is none.
+     */
+    public <T> Mono<T> execute(Function<PistonEndpoint, Mono<T>> call, PistonEndpoint exclude) {
+        return Mono.defer(() -> {
+            PistonEndpoint endpoint = choose(exclude);
+            if (endpoint == null) {
+                return Mono.empty();
+            }
+            endpoint.acquire();
+            return call.apply(endpoint)
+                    .doOnSuccess(result -> endpoint.recordSuccess())
+                    .doOnError(error -> recordFailure(endpoint, error))
+                    .doFinally(signal -> endpoint.release());
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #execute}; the endpoint stays outstanding until
+     * the stream terminates or is cancelled.
+     */
+    public <T> Flux<T> executeMany(Function<PistonEndpoint, Flux<T>> call) {
+        return Flux.defer(() -> {
+            PistonEndpoint endpoint = choose();
+            endpoint.acquire();
+            return call.apply(endpoint)
+                    .doOnComplete(endpoint::recordSuccess)
+                    .doOnError(error -> recordFailure(endpoint, error))
+                    .doFinally(signal -> endpoint.release());
+        });
+    }
+
+    public PistonEndpoint choose() {
+        return choose(null);
+    }
+
+    /**
+     * @param exclude an endpoint not to choose, or null
+     * @return null only when {@code exclude} is set and no other endpoint is healthy
+     */
+    PistonEndpoint choose(PistonEndpoint exclude) {
+        if (endpoints.size() == 1 && exclude == null) {
+            return endpoints.get(0);
+        }
+
+        List<PistonEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (PistonEndpoint endpoint : endpoints) {
+            if (endpoint.isHealthy() && endpoint != exclude) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            if (exclude != null) {
+                return null;
+            }
+            // With every endpoint ejected, keep trying all of them rather than failing outright
+            candidates = endpoints;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        PistonEndpoint a = candidates.get(first);
+        PistonEndpoint b = candidates.get(second);
+        return a.getOutstanding() <= b.getOutstanding() ? a : b;
+    }
+
+    public List<PistonEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    @Scheduled(fixedDelayString = "${app.piston.health.interval-ms:10000}",
+            initialDelayString = "${app.piston.health.interval-ms:10000}")
+    public void probeEndpoints() {
+        probeAll().subscribe();
+    }
+
+    public Mono<Void> probeAll() {
+        return Flux.fromIterable(endpoints)
+                .flatMap(this::probe)
+                .then();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        endpoints.forEach(endpoint -> stats.put(endpoint.getBaseUrl(), endpoint.stats()));
+        return stats;
+    }
+
+    private Mono<Void> probe(PistonEndpoint endpoint) {
+        return pistonWebClient.get()
+                .uri(endpoint.getBaseUrl() + "/runtimes")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(probeTimeout)
+                .doOnSuccess(response -> {
+                    if (endpoint.recordProbeSuccess(recoveryThreshold)) {
+                        log.info("Piston endpoint {} is healthy again, readmitting", endpoint.getBaseUrl());
+                    }
+                })
+                .doOnError(error -> {
+                    log.debug("Health probe of {} failed: {}", endpoint.getBaseUrl(), error.getMessage());
+                    if (endpoint.recordFailure(failureThreshold)) {
+                        log.warn("Piston endpoint {} failed its health probe, ejecting", endpoint.getBaseUrl());
+                    }
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * A 4xx means Piston rejected this particular request, which says nothing
+     * about the instance's health.
+     */
+    static boolean isUpstreamFailure(Throwable error) {
+        return !(error instanceof WebClientResponseException responseError
+                && responseError.getStatusCode().is4xxClientError());
+    }
+
+    private void recordFailure(PistonEndpoint endpoint, Throwable error) {
+        if (!isUpstreamFailure(error)) {
+            endpoint.recordSuccess();
+            return;
+        }
+        if (endpoint.recordFailure(failureThreshold)) {
+            log.warn("Piston endpoint {} failed {} requests in a row, ejecting",
+                    endpoint.getBaseUrl(), failureThreshold);
+        }
+    }
+}
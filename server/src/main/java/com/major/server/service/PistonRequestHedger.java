@@ -0,0 +1,222 @@
+package com.major.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hedges slow Piston calls: when a call has not answered within the
+ * {@code percentile} of recent latency for its language, a duplicate goes to
+ * another instance, the first result wins and the other call is cancelled.
+ * <p>
+ * Hedges are paid for from a budget that every call tops up by
+ * {@code budget-percent}% of a hedge, so they add at most that much load on top
+ * of a small burst allowance. No hedges are sent for a language until
+ * {@code min-samples} calls have been timed over the last one to two
+ * {@code window-ms}.
+ */
+@Component
+public class PistonRequestHedger {
+
+    // One hedge costs this many budget units
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_BURST_HEDGES = 10;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final long minSamples;
+    private final long budgetPerCall;
+    private final long windowNanos;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong budget = new AtomicLong(HEDGE_COST * MAX_BURST_HEDGES);
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public PistonRequestHedger(
+            @Value("${app.piston.hedging.enabled:false}") boolean enabled,
+            @Value("${app.piston.hedging.percentile:95}") double percentile,
+            @Value("${app.piston.hedging.min-delay-ms:50}") long minDelayMs,
+            @Value("${app.piston.hedging.min-samples:20}") long minSamples,
+            @Value("${app.piston.hedging.budget-percent:10}") double budgetPercent,
+            @Value("${app.piston.hedging.window-ms:60000}") long windowMs) {
+        this.enabled = enabled;
+        this.percentile = percentile / 100;
+        this.minDelay = Duration.ofMillis(minDelayMs);
+        this.minSamples = minSamples;
+        this.budgetPerCall = Math.round(HEDGE_COST * budgetPercent / 100);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <T> Mono<T> execute(String language, Mono<T> primary, Mono<T> hedge) {
+        return execute(language, primary, () -> true, hedge);
+    }
+
+    /**
+     * Runs {@code primary}, and {@code hedge} as well if {@code primary} is still
+     * pending after the hedge delay for {@code language}, {@code canHedge} holds and
+     * the budget allows it. {@code canHedge} is asked once {@code primary} has been
+     * subscribed to and again when the delay is up, so no timer is started and no
+     * budget is spent when there is nowhere to send a hedge. The first value wins.
+     * If both calls fail, the first error is propagated; a primary that fails before
+     * the hedge delay fails the call without hedging.
+     */
+    public <T> Mono<T> execute(String language, Mono<T> primary, BooleanSupplier canHedge, Mono<T> hedge) {
+        if (!enabled) {
+            return primary;
+        }
+        return Mono.defer(() -> {
+            calls.increment();
+            deposit();
+            LatencyWindow window = latencies.computeIfAbsent(language, key -> new LatencyWindow());
+            Duration delay = window.hedgeDelay();
+            long start = System.nanoTime();
+            Mono<T> timed = primary.doOnNext(result -> window.record(System.nanoTime() - start));
+            if (delay == null) {
+                return timed;
+            }
+
+            AtomicReference<Throwable> firstError = new AtomicReference<>();
+            Sinks.One<Boolean> primaryFailed = Sinks.one();
+            Mono<Attempt<T>> primaryAttempt = timed
+                    .doOnError(error -> {
+                        firstError.compareAndSet(null, error);
+                        primaryFailed.tryEmitValue(true);
+                    })
+                    .map(result -> new Attempt<>(result, false));
+            Mono<Attempt<T>> hedgeAttempt = Mono
+                    .defer(() -> canHedge.getAsBoolean() ? Mono.delay(delay) : Mono.<Long>empty())
+                    // Not worth hedging a call that already failed
+                    .takeUntilOther(primaryFailed.asMono())
+                    .flatMap(tick -> {
+                        if (!canHedge.getAsBoolean()) {
+                            return Mono.empty();
+                        }
+                        if (!withdraw()) {
+                            budgetExhausted.increment();
+                            return Mono.empty();
+                        }
+                        hedges.increment();
+                        return hedge.doOnError(error -> firstError.compareAndSet(null, error))
+                                .map(result -> new Attempt<>(result, true));
+                    });
+
+            return Mono.firstWithValue(primaryAttempt, hedgeAttempt)
+                    .map(attempt -> {
+                        if (attempt.hedged()) {
+                            hedgeWins.increment();
+                            // The primary took at least this long; counting it keeps slow calls in the tail
+                            window.record(System.nanoTime() - start);
+                        }
+                        return attempt.result();
+                    })
+                    .onErrorMap(NoSuchElementException.class,
+                            error -> firstError.get() != null ? firstError.get() : error);
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long callCount = calls.sum();
+        Map<String, Object> delays = new LinkedHashMap<>();
+        latencies.forEach((language, window) -> {
+            Duration delay = window.hedgeDelay();
+            delays.put(language, delay != null ? delay.toMillis() : null);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("calls", callCount);
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("budgetExhausted", budgetExhausted.sum());
+        stats.put("hedgeRate", callCount == 0 ? 0.0 : (double) hedges.sum() / callCount);
+        stats.put("hedgeDelayMs", delays);
+        return stats;
+    }
+
+    private void deposit() {
+        long max = HEDGE_COST * MAX_BURST_HEDGES;
+        budget.getAndUpdate(units -> Math.min(max, units + budgetPerCall));
+    }
+
+    private boolean withdraw() {
+        long units;
+        do {
+            units = budget.get();
+            if (units < HEDGE_COST) {
+                return false;
+            }
+        } while (!budget.compareAndSet(units, units - HEDGE_COST));
+        return true;
+    }
+
+    private record Attempt<T>(T result, boolean hedged) {
+    }
+
+    /**
+     * Call latencies of one language over the current and the previous window.
+     */
+    private final class LatencyWindow {
+
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous = new LatencyHistogram();
+        private volatile long rotatedAt = System.nanoTime();
+
+        void record(long latencyNanos) {
+            rotateIfDue();
+            current.record(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+
+        /**
+         * @return null while there are too few samples to tell what slow is
+         */
+        Duration hedgeDelay() {
+            rotateIfDue();
+            long[] counts = current.snapshot();
+            long[] older = previous.snapshot();
+            long samples = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += older[i];
+                samples += counts[i];
+            }
+            if (samples < minSamples) {
+                return null;
+            }
+            Duration delay = Duration.ofMillis(LatencyHistogram.valueAtQuantile(counts, percentile));
+            return delay.compareTo(minDelay) > 0 ? delay : minDelay;
+        }
+
+        private void rotateIfDue() {
+            if (System.nanoTime() - rotatedAt < windowNanos) {
+                return;
+            }
+            synchronized (this) {
+                if (System.nanoTime() - rotatedAt >= windowNanos) {
+                    previous = current;
+                    current = new LatencyHistogram();
+                    rotatedAt = System.nanoTime();
+                }
+            }
+        }
+    }
+}
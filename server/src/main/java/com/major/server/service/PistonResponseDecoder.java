@@ -0,0 +1,359 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.PistonExecuteResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+
+/**
+ * Decodes Piston responses chunk by chunk with Jackson's non-blocking parser, so
+ * the body is never held in memory as a whole. Before the parser sees a chunk,
+ * every JSON string in it is cut at {@code max-field-bytes} (counted as the bytes
+ * appear in the response, escapes included) and the rest of the string is skipped,
+ * so a large stdout/stderr costs no more memory than the cap. Cut stdout/stderr
+ * fields are flagged as truncated; the redundant combined {@code output} field is
+ * skipped.
+ */
+@Component
+public class PistonResponseDecoder {
+
+    private final ObjectMapper objectMapper;
+    private final int maxFieldBytes;
+
+    public PistonResponseDecoder(
+            ObjectMapper objectMapper,
+            @Value("${app.piston.response.max-field-bytes:65536}") int maxFieldBytes) {
+        this.objectMapper = objectMapper;
+        this.maxFieldBytes = maxFieldBytes;
+    }
+
+    public Mono<PistonExecuteResponse> decode(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            ResponseReader reader;
+            try {
+                reader = new ResponseReader(objectMapper.getFactory().createNonBlockingByteArrayParser(),
+                        new StringCapper(maxFieldBytes));
+            } catch (IOException e) {
+                return Mono.error(new UncheckedIOException(e));
+            }
+            return body
+                    .doOnNext(buffer -> {
+                        try {
+                            byte[] chunk = new byte[buffer.readableByteCount()];
+                            buffer.read(chunk);
+                            reader.feed(chunk);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(reader::finish))
+                    .doFinally(signal -> reader.close());
+        });
+    }
+
+    /**
+     * Cuts every JSON string value in a byte stream down to {@code maxBytes}, and keys
+     * down to {@link #MAX_KEY_BYTES}, never inside an escape sequence or a UTF-8
+     * character. Remembers which strings it cut by their position among all strings
+     * (keys included) in the document.
+     */
+    static final class StringCapper {
+
+        // Longer than any field name Piston sends
+        private static final int MAX_KEY_BYTES = 256;
+
+        private final int maxBytes;
+        private final BitSet cut = new BitSet();
+        // Containers enclosing the current position, set for objects
+        private final BitSet objects = new BitSet();
+        private int depth;
+        private boolean expectKey;
+        private int strings;
+        private int limit;
+        private boolean inString;
+        private boolean skipping;
+        private boolean escaped;
+        private int kept;
+        // The escape sequence or UTF-8 character being read, emitted whole or not at all
+        private final byte[] unit = new byte[6];
+        private int unitLength;
+        private int unitSize;
+
+        StringCapper(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Rewrites {@code chunk} in place and returns how many of its bytes to keep.
+         */
+        int apply(byte[] chunk) {
+            int out = 0;
+            for (byte b : chunk) {
+                if (!inString) {
+                    switch (b) {
+                        case '"' -> {
+                            inString = true;
+                            skipping = false;
+                            escaped = false;
+                            kept = 0;
+                            limit = expectKey ? MAX_KEY_BYTES : maxBytes;
+                            expectKey = false;
+                            strings++;
+                        }
+                        case '{', '[' -> {
+                            objects.set(depth++, b == '{');
+                            expectKey = b == '{';
+                        }
+                        case '}', ']' -> {
+                            depth = Math.max(0, depth - 1);
+                            expectKey = false;
+                        }
+                        case ',' -> expectKey = depth > 0 && objects.get(depth - 1);
+                        default -> {
+                            // ':' and everything else leave the position unchanged
+                        }
+                    }
+                    chunk[out++] = b;
+                } else if (skipping) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                        chunk[out++] = b;
+                    }
+                } else if (unitLength == 0 && b == '"') {
+                    inString = false;
+                    chunk[out++] = b;
+                } else {
+                    if (unitLength == 0) {
+                        unitSize = unitSize(b);
+                    } else if (unitLength == 1 && unit[0] == '\\' && b == 'u') {
+                        unitSize = 6;
+                    }
+                    unit[unitLength++] = b;
+                    if (unitLength == unitSize) {
+                        if (kept + unitSize > limit) {
+                            skipping = true;
+                            cut.set(strings - 1);
+                        } else {
+                            System.arraycopy(unit, 0, chunk, out, unitSize);
+                            out += unitSize;
+                            kept += unitSize;
+                        }
+                        unitLength = 0;
+                    }
+                }
+            }
+            return out;
+        }
+
+        boolean wasCut(int string) {
+            return cut.get(string);
+        }
+
+        private static int unitSize(byte lead) {
+            if (lead == '\\') {
+                return 2;
+            }
+            int b = lead & 0xFF;
+            if (b >= 0xF0 && b <= 0xF7) {
+                return 4;
+            }
+            if (b >= 0xE0) {
+                return b <= 0xEF ? 3 : 1;
+            }
+            return b >= 0xC0 ? 2 : 1;
+        }
+    }
+
+    /**
+     * Folds parser tokens into a response as they become available.
+     */
+    private static final class ResponseReader {
+
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final StringCapper capper;
+
+        private int strings;
+        private int depth;
+        private int skipDepth;
+        private String field;
+        private String stageField;
+        private boolean finished;
+
+        private String language;
+        private String version;
+        private PistonExecuteResponse.Stage compile;
+        private PistonExecuteResponse.Stage run;
+        private StageBuilder stage;
+
+        ResponseReader(JsonParser parser, StringCapper capper) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.capper = capper;
+        }
+
+        void feed(byte[] chunk) {
+            try {
+                int length = capper.apply(chunk);
+                if (length > 0) {
+                    feeder.feedInput(chunk, 0, length);
+                    drain();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Invalid response from Piston", e);
+            }
+        }
+
+        PistonExecuteResponse finish() {
+            feeder.endOfInput();
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Invalid response from Piston", e);
+            }
+            if (!finished) {
+                throw new UncheckedIOException(new IOException("Incomplete response from Piston"));
+            }
+            return new PistonExecuteResponse(language, version, compile, run);
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // Nothing is left to release
+            }
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                boolean cut = false;
+                if (token == JsonToken.FIELD_NAME || token == JsonToken.VALUE_STRING) {
+                    cut = capper.wasCut(strings++);
+                }
+                accept(token, cut);
+            }
+        }
+
+        private void accept(JsonToken token, boolean cut) throws IOException {
+            if (skipDepth > 0) {
+                if (token.isStructStart()) {
+                    skipDepth++;
+                } else if (token.isStructEnd()) {
+                    skipDepth--;
+                }
+                return;
+            }
+            if (finished) {
+                throw new IOException("Unexpected token after the Piston response: " + token);
+            }
+
+            switch (depth) {
+                case 0 -> {
+                    expect(token, JsonToken.START_OBJECT);
+                    depth = 1;
+                }
+                case 1 -> {
+                    if (token == JsonToken.END_OBJECT) {
+                        finished = true;
+                    } else if (token == JsonToken.FIELD_NAME) {
+                        field = parser.currentName();
+                    } else {
+                        topLevelValue(token);
+                    }
+                }
+                default -> {
+                    if (token == JsonToken.END_OBJECT) {
+                        if ("compile".equals(field)) {
+                            compile = stage.build();
+                        } else {
+                            run = stage.build();
+                        }
+                        depth = 1;
+                    } else if (token == JsonToken.FIELD_NAME) {
+                        stageField = parser.currentName();
+                    } else {
+                        stageValue(token, cut);
+                    }
+                }
+            }
+        }
+
+        private void topLevelValue(JsonToken token) throws IOException {
+            switch (field) {
+                case "language" -> language = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "version" -> version = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "compile", "run" -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        stage = new StageBuilder();
+                        depth = 2;
+                    } else if (token != JsonToken.VALUE_NULL) {
+                        throw new IOException("Unexpected token in Piston response: expected "
+                                + JsonToken.START_OBJECT + " but got " + token);
+                    }
+                }
+                default -> skip(token);
+            }
+        }
+
+        private void stageValue(JsonToken token, boolean cut) throws IOException {
+            switch (stageField) {
+                case "stdout" -> {
+                    stage.stdout = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    stage.truncated |= cut;
+                    skip(token);
+                }
+                case "stderr" -> {
+                    stage.stderr = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    stage.truncated |= cut;
+                    skip(token);
+                }
+                case "code" -> stage.code = token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+                case "signal" -> stage.signal = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                // "output" repeats stdout and stderr interleaved, so it is never decoded
+                default -> skip(token);
+            }
+        }
+
+        private void skip(JsonToken token) {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+            }
+        }
+
+        private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+            if (actual != expected) {
+                throw new IOException("Unexpected token in Piston response: expected " + expected + " but got " + actual);
+            }
+        }
+    }
+
+    private static final class StageBuilder {
+
+        private String stdout;
+        private String stderr;
+        private Integer code;
+        private String signal;
+        private boolean truncated;
+
+        PistonExecuteResponse.Stage build() {
+            return new PistonExecuteResponse.Stage(stdout, stderr, code, signal, truncated);
+        }
+    }
+}
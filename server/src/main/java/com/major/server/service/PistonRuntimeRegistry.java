@@ -0,0 +1,188 @@
+package com.major.server.service;
+
+import com.major.server.dto.PistonRuntime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves user-facing language names to an exact Piston runtime. The runtime
+ * list is loaded from {@code /runtimes} at startup and refreshed in the
+ * background; every refresh publishes a new immutable alias map, so lookups
+ * never lock. Until the first load succeeds, the built-in aliases are used with
+ * version {@code "*"}.
+ */
+@Slf4j
+@Component
+public class PistonRuntimeRegistry {
+
+    // Piston resolves "*" to the latest installed runtime for the language
+    static final String ANY_VERSION = "*";
+
+    // Names the editor uses that Piston does not list as aliases
+    private static final Map<String, String> BUILT_IN_ALIASES = Map.ofEntries(
+            Map.entry("javascript", "javascript"), Map.entry("js", "javascript"),
+            Map.entry("typescript", "typescript"), Map.entry("ts", "typescript"),
+            Map.entry("python", "python"), Map.entry("py", "python"),
+            Map.entry("java", "java"),
+            Map.entry("cpp", "c++"), Map.entry("c++", "c++"),
+            Map.entry("c", "c"),
+            Map.entry("csharp", "csharp"), Map.entry("c#", "csharp"),
+            Map.entry("go", "go"),
+            Map.entry("rust", "rust"),
+            Map.entry("php", "php"),
+            Map.entry("ruby", "ruby"),
+            Map.entry("swift", "swift"),
+            Map.entry("kotlin", "kotlin"),
+            Map.entry("scala", "scala"),
+            Map.entry("bash", "bash"), Map.entry("sh", "bash")
+    );
+
+    private static final Comparator<String> VERSION_ORDER = PistonRuntimeRegistry::compareVersions;
+
+    private final WebClient pistonWebClient;
+    private final PistonLoadBalancer pistonLoadBalancer;
+    private final Duration timeout;
+
+    private volatile Map<String, PistonRuntime> runtimesByAlias;
+    private volatile boolean loaded;
+    private volatile Instant lastRefresh;
+
+    public PistonRuntimeRegistry(
+            WebClient pistonWebClient,
+            PistonLoadBalancer pistonLoadBalancer,
+            @Value("${app.piston.runtimes.timeout-ms:5000}") long timeoutMs) {
+        this.pistonWebClient = pistonWebClient;
+        this.pistonLoadBalancer = pistonLoadBalancer;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.runtimesByAlias = fallbackAliases();
+    }
+
+    /**
+     * @throws UnsupportedLanguageException when no runtime matches {@code language}
+     */
+    public PistonRuntime resolve(String language) {
+        Map<String, PistonRuntime> aliases = runtimesByAlias;
+        PistonRuntime runtime = aliases.get(language);
+        if (runtime == null) {
+            runtime = aliases.get(language.toLowerCase());
+        }
+        if (runtime == null) {
+            throw new UnsupportedLanguageException(language);
+        }
+        return runtime;
+    }
+
+    @Scheduled(fixedDelayString = "${app.piston.runtimes.refresh-interval-ms:300000}")
+    public void refreshRuntimes() {
+        refresh().subscribe();
+    }
+
+    public Mono<Void> refresh() {
+        return pistonLoadBalancer.execute(endpoint -> pistonWebClient
+                        .get()
+                        .uri(endpoint.getBaseUrl() + "/runtimes")
+                        .retrieve()
+                        .bodyToMono(PistonRuntime[].class)
+                        .timeout(timeout))
+                .doOnNext(runtimes -> {
+                    if (runtimes.length == 0) {
+                        log.warn("Piston reported no installed runtimes; keeping the current language map");
+                        return;
+                    }
+                    runtimesByAlias = buildAliases(Arrays.asList(runtimes));
+                    loaded = true;
+                    lastRefresh = Instant.now();
+                    log.debug("Loaded {} Piston runtimes", runtimes.length);
+                })
+                .doOnError(error -> log.warn("Failed to refresh Piston runtimes: {}", error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("aliases", runtimesByAlias.size());
+        stats.put("lastRefresh", lastRefresh != null ? lastRefresh.toString() : null);
+        return stats;
+    }
+
+    /**
+     * Maps every language name and alias to the highest installed version of that
+     * language. Language names win over aliases of other languages.
+     */
+    static Map<String, PistonRuntime> buildAliases(List<PistonRuntime> runtimes) {
+        Map<String, PistonRuntime> latest = new HashMap<>();
+        for (PistonRuntime runtime : runtimes) {
+            if (runtime.language() == null || runtime.version() == null) {
+                continue;
+            }
+            latest.merge(runtime.language(), runtime,
+                    (current, candidate) -> VERSION_ORDER.compare(candidate.version(), current.version()) > 0
+                            ? candidate : current);
+        }
+
+        Map<String, PistonRuntime> aliases = new HashMap<>();
+        BUILT_IN_ALIASES.forEach((alias, language) -> {
+            PistonRuntime runtime = latest.get(language);
+            if (runtime != null) {
+                aliases.put(alias, pinned(runtime));
+            }
+        });
+        for (PistonRuntime runtime : latest.values()) {
+            PistonRuntime pinned = pinned(runtime);
+            if (runtime.aliases() != null) {
+                runtime.aliases().forEach(alias -> aliases.putIfAbsent(alias.toLowerCase(), pinned));
+            }
+        }
+        for (PistonRuntime runtime : latest.values()) {
+            aliases.put(runtime.language().toLowerCase(), pinned(runtime));
+        }
+        return Map.copyOf(aliases);
+    }
+
+    private static Map<String, PistonRuntime> fallbackAliases() {
+        Map<String, PistonRuntime> aliases = new HashMap<>();
+        BUILT_IN_ALIASES.forEach((alias, language) -> aliases.put(alias, new PistonRuntime(language, ANY_VERSION)));
+        return Map.copyOf(aliases);
+    }
+
+    private static PistonRuntime pinned(PistonRuntime runtime) {
+        return new PistonRuntime(runtime.language(), runtime.version());
+    }
+
+    /**
+     * Compares dotted versions numerically, e.g. 3.10.0 &gt; 3.9.4. Segments are
+     * compared as digit strings, so a segment too long for a {@code long} still orders.
+     */
+    static int compareVersions(String a, String b) {
+        String[] left = a.split("[^0-9]+");
+        String[] right = b.split("[^0-9]+");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            int order = compareSegments(i < left.length ? left[i] : "", i < right.length ? right[i] : "");
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareSegments(String a, String b) {
+        String l = a.replaceFirst("^0+", "");
+        String r = b.replaceFirst("^0+", "");
+        return l.length() != r.length() ? Integer.compare(l.length(), r.length()) : l.compareTo(r);
+    }
+}
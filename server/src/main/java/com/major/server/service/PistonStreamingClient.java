@@ -0,0 +1,79 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client for Piston's interactive WebSocket API ({@code /connect}), which reports
+ * stage changes and stdout/stderr chunks while the program runs instead of a
+ * single response at the end.
+ */
+@Component
+public class PistonStreamingClient {
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final int maxFrameBytes;
+
+    public PistonStreamingClient(
+            ObjectMapper objectMapper,
+            @Value("${app.piston.pool.connect-timeout-ms:3000}") int connectTimeoutMs,
+            @Value("${app.execution.stream.max-frame-bytes:65536}") int maxFrameBytes) {
+        this.objectMapper = objectMapper;
+        this.maxFrameBytes = maxFrameBytes;
+        // Upgraded connections never go back to a pool, so streams use dedicated connections
+        this.httpClient = HttpClient.newConnection()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs);
+    }
+
+    /**
+     * Starts the program on the given endpoint and emits every message Piston sends
+     * (runtime, stage, data, exit, error). Demand from the subscriber is propagated
+     * to the socket, so a slow consumer slows down reading instead of buffering.
+     */
+    public Flux<JsonNode> run(PistonEndpoint endpoint, String language, String version, String code) {
+        Map<String, Object> init = new LinkedHashMap<>();
+        init.put("type", "init");
+        init.put("language", language);
+        init.put("version", version);
+        init.put("files", List.of(Map.of("content", code)));
+
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(init))
+                .flatMapMany(initMessage -> httpClient
+                        .websocket(WebsocketClientSpec.builder().maxFramePayloadLength(maxFrameBytes).build())
+                        .uri(toWebSocketUrl(endpoint.getBaseUrl()) + "/connect")
+                        .handle((inbound, outbound) -> outbound.sendString(Mono.just(initMessage)).then()
+                                .thenMany(inbound.aggregateFrames(maxFrameBytes).receive().asString())))
+                .map(this::readMessage);
+    }
+
+    private JsonNode readMessage(String message) {
+        try {
+            return objectMapper.readTree(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid message from Piston: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static String toWebSocketUrl(String baseUrl) {
+        if (baseUrl.startsWith("https://")) {
+            return "wss://" + baseUrl.substring("https://".length());
+        }
+        if (baseUrl.startsWith("http://")) {
+            return "ws://" + baseUrl.substring("http://".length());
+        }
+        return baseUrl;
+    }
+}
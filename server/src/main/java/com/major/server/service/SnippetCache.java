@@ -0,0 +1,124 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.model.Snippet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of single snippets, kept as the JSON bytes GET
+ * /api/snippets/{id} responds with, so that popular snippets are neither loaded
+ * nor serialized again on every view. Writers must {@link #invalidate} the
+ * snippets they change.
+ */
+@Component
+public class SnippetCache {
+
+    // Rough per-entry overhead for the key, the record and the map node
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+    private static final int GENERATION_STRIPES = 64;
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final WeightedLruCache<String, CachedSnippet> cache;
+    // Bumped by every invalidation of a key in the stripe, so that a load that raced
+    // with a write does not put the stale snippet back
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public SnippetCache(
+            ObjectMapper objectMapper,
+            @Value("${app.snippets.cache.enabled:true}") boolean enabled,
+            @Value("${app.snippets.cache.max-entries:1000}") long maxEntries,
+            @Value("${app.snippets.cache.max-bytes:33554432}") long maxBytes,
+            @Value("${app.snippets.cache.ttl-ms:60000}") long ttlMs) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.cache = new WeightedLruCache<>(maxEntries, maxBytes, ttlMs, CachedSnippet::estimatedSize);
+    }
+
+    /**
+     * Returns the cached snippet, or loads, serializes and caches it.
+     */
+    public Optional<CachedSnippet> get(String id, Supplier<Optional<Snippet>> loader) {
+        if (!enabled) {
+            return loader.get().map(this::serialize);
+        }
+        CachedSnippet cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        int stripe = stripe(id);
+        long generation = generations.get(stripe);
+        Optional<CachedSnippet> loaded = loader.get().map(this::serialize);
+        loaded.ifPresent(snippet -> {
+            if (generations.get(stripe) == generation) {
+                cache.put(id, snippet);
+            }
+        });
+        return loaded;
+    }
+
+    public void invalidate(String id) {
+        if (id == null) {
+            return;
+        }
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    private CachedSnippet serialize(Snippet snippet) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(snippet);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize snippet " + snippet.getId(), e);
+        }
+        // Two writes within one millisecond share updatedAt; the content hash tells them apart
+        long updatedAt = snippet.getUpdatedAt() != null ? snippet.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+        String etag = "\"" + Long.toHexString(updatedAt) + "-" + ContentHash.sha256HexOfBytes(json).substring(0, 16) + "\"";
+        return new CachedSnippet(json, etag);
+    }
+
+    private static int stripe(String id) {
+        return Math.floorMod(id.hashCode(), GENERATION_STRIPES);
+    }
+
+    public record CachedSnippet(byte[] json, String etag) {
+
+        /**
+         * Whether an If-None-Match header value names this version. Weak
+         * validators match too, as GET only needs weak comparison.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long estimatedSize() {
+            return ENTRY_OVERHEAD_BYTES + json.length;
+        }
+    }
+}
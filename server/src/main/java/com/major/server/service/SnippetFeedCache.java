@@ -0,0 +1,128 @@
+package com.major.server.service;
+
+import com.major.server.dto.SnippetSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the first {@code pages} pages of the public snippet feeds, keyed by
+ * feed, sort and page size. Entries live for a short TTL and are all dropped
+ * whenever a public snippet is created, changed or deleted. Concurrent misses
+ * for the same page share one query.
+ */
+@Component
+public class SnippetFeedCache {
+
+    public static final String PUBLIC = "public";
+    public static final String POPULAR = "popular";
+
+    // Rough overhead of a page, and of each snippet on it beyond its preview
+    private static final long PAGE_OVERHEAD_BYTES = 256;
+    private static final long SNIPPET_OVERHEAD_BYTES = 512;
+
+    private final boolean enabled;
+    private final int cachedPages;
+    private final WeightedLruCache<FeedKey, Page<SnippetSummary>> cache;
+    private final Map<FeedKey, CompletableFuture<Page<SnippetSummary>>> loading = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so that a load that raced with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public SnippetFeedCache(
+            @Value("${app.snippets.feed-cache.enabled:true}") boolean enabled,
+            @Value("${app.snippets.feed-cache.pages:3}") int cachedPages,
+            @Value("${app.snippets.feed-cache.max-entries:200}") long maxEntries,
+            @Value("${app.snippets.feed-cache.max-bytes:16777216}") long maxBytes,
+            @Value("${app.snippets.feed-cache.ttl-ms:5000}") long ttlMs) {
+        this.enabled = enabled;
+        this.cachedPages = cachedPages;
+        this.cache = new WeightedLruCache<>(maxEntries, maxBytes, ttlMs, SnippetFeedCache::estimatedSize);
+    }
+
+    /**
+     * Returns the cached page of {@code feed}, or loads it. Pages past the first
+     * {@code pages} are always loaded.
+     */
+    public Page<SnippetSummary> get(String feed, Pageable pageable, Supplier<Page<SnippetSummary>> loader) {
+        if (!enabled || pageable.getPageNumber() >= cachedPages) {
+            return loader.get();
+        }
+        FeedKey key = new FeedKey(feed, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString());
+        Page<SnippetSummary> cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Page<SnippetSummary>> load = new CompletableFuture<>();
+        CompletableFuture<Page<SnippetSummary>> pending = loading.putIfAbsent(key, load);
+        if (pending != null) {
+            collapsed.increment();
+            return await(pending);
+        }
+
+        long started = generation.get();
+        try {
+            Page<SnippetSummary> page = loader.get();
+            if (generation.get() == started) {
+                cache.put(key, page);
+            }
+            load.complete(page);
+            return page;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+        // Later requests must not join loads that may have read the old state
+        loading.clear();
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cache.stats());
+        stats.put("collapsed", collapsed.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private static Page<SnippetSummary> await(CompletableFuture<Page<SnippetSummary>> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static long estimatedSize(Page<SnippetSummary> page) {
+        long size = PAGE_OVERHEAD_BYTES;
+        for (SnippetSummary snippet : page.getContent()) {
+            size += SNIPPET_OVERHEAD_BYTES + 2L * (snippet.getPreview() != null ? snippet.getPreview().length() : 0);
+        }
+        return size;
+    }
+
+    private record FeedKey(String feed, int page, int size, String sort) {
+    }
+}
@@ -1,22 +1,75 @@
 package com.major.server.service;
 
+import com.major.server.dto.CursorPage;
+import com.major.server.dto.SnippetSummary;
 import com.major.server.model.Snippet;
 import com.major.server.repository.SnippetRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SnippetService {
 
+    private static final int PREVIEW_BATCH_SIZE = 500;
+    private static final int MAX_TOGGLE_ATTEMPTS = 3;
+
     private final SnippetRepository snippetRepository;
+    private final SnippetCache snippetCache;
+    private final SnippetFeedCache snippetFeedCache;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.snippets.feed.max-limit:50}")
+    private int maxFeedLimit;
+
+    @Value("${app.snippets.preview.lines:8}")
+    private int previewLines;
+
+    @Value("${app.snippets.preview.chars:600}")
+    private int previewChars;
+
+    @Value("${app.snippets.backfill:true}")
+    private boolean backfill;
+
+    // Keyset feed orders, each backed by a compound index on Snippet
+    private enum FeedSort {
+        NEWEST("createdAt"),
+        POPULAR("starCount");
+
+        private final String field;
+
+        FeedSort(String field) {
+            this.field = field;
+        }
+    }
 
     @Transactional
     public Snippet createSnippet(String title, String code, String language, String userId) {
@@ -27,36 +80,114 @@ public class SnippetService {
                 .userId(userId)
                 .build();
         
-        return snippetRepository.save(snippet);
+        Snippet saved = store(snippet);
+        evict(saved.getId(), saved.isPublic());
+        return saved;
     }
 
     @Transactional
     public Snippet save(Snippet snippet) {
-        return snippetRepository.save(snippet);
+        // An update may have made a public snippet private
+        boolean update = snippet.getId() != null;
+        Snippet saved = store(snippet);
+        evict(saved.getId(), update || saved.isPublic());
+        return saved;
     }
 
     public Optional<Snippet> findById(String id) {
         return snippetRepository.findById(id);
     }
 
-    public List<Snippet> findByUserId(String userId) {
-        return snippetRepository.findByUserId(userId);
+    /**
+     * A snippet as serialized JSON with its ETag, answered from the snippet cache
+     * when possible.
+     */
+    public Optional<SnippetCache.CachedSnippet> findCachedById(String id) {
+        return snippetCache.get(id, () -> snippetRepository.findById(id));
+    }
+
+    public List<SnippetSummary> findByUserId(String userId) {
+        return findSummaries(Query.query(Criteria.where("userId").is(userId)));
     }
 
-    public Page<Snippet> findPublicSnippets(Pageable pageable) {
-        return snippetRepository.findPublicSnippets(pageable);
+    public Page<SnippetSummary> findPublicSnippets(Pageable pageable) {
+        return snippetFeedCache.get(SnippetFeedCache.PUBLIC, pageable,
+                () -> findSummaryPage(Criteria.where("isPublic").is(true), pageable));
     }
 
-    public Page<Snippet> searchPublicSnippets(String searchTerm, Pageable pageable) {
-        return snippetRepository.searchPublicSnippets(searchTerm, pageable);
+    /**
+     * One page of public snippets, newest or most starred first, optionally only
+     * of one language or tag. Pages are found by seeking past the last (sort key,
+     * _id) of the previous page, so deep pages cost the same as the first one and
+     * nothing is counted. The popular feed sorts and seeks on the stored starCount,
+     * which {@link #backfill} fills in for snippets written before it existed.
+     *
+     * @param cursor {@code nextCursor} of the previous page, or null for the first page
+     * @throws IllegalArgumentException for a malformed cursor, or a sort and filter
+     *                                  combination that no index serves
+     */
+    public CursorPage<SnippetSummary> findPublicFeed(String sort, String language, String tag, String cursor, int limit) {
+        FeedSort feedSort;
+        try {
+            feedSort = FeedSort.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        if (language != null && tag != null) {
+            throw new IllegalArgumentException("Filter by language or by tag, not both");
+        }
+        if (feedSort == FeedSort.POPULAR && (language != null || tag != null)) {
+            throw new IllegalArgumentException("The popular feed cannot be filtered");
+        }
+
+        Criteria criteria = Criteria.where("isPublic").is(true);
+        if (language != null) {
+            criteria = criteria.and("language").is(language);
+        }
+        if (tag != null) {
+            criteria = criteria.and("tags").is(tag);
+        }
+        if (cursor != null) {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            Object key = feedSort == FeedSort.POPULAR ? after.keyAsLong() : after.keyAsDateTime();
+            // The range on the sort key keeps the scan on the index; the $or only breaks ties
+            criteria = criteria.and(feedSort.field).lte(key).orOperator(
+                    Criteria.where(feedSort.field).lt(key),
+                    Criteria.where("id").lt(after.id()));
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, maxFeedLimit));
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, feedSort.field, "id"))
+                // One extra row tells whether there is a next page
+                .limit(pageSize + 1);
+        List<SnippetSummary> snippets = findSummaries(query);
+
+        boolean hasMore = snippets.size() > pageSize;
+        List<SnippetSummary> page = hasMore ? snippets.subList(0, pageSize) : snippets;
+        String nextCursor = null;
+        if (hasMore) {
+            SnippetSummary last = page.get(pageSize - 1);
+            Object key = feedSort == FeedSort.POPULAR ? last.getStarCount() : last.getCreatedAt();
+            nextCursor = KeysetCursor.of(key, last.getId()).encode();
+        }
+        return new CursorPage<>(page, nextCursor, hasMore);
+    }
+
+    public Page<SnippetSummary> searchPublicSnippets(String searchTerm, Pageable pageable) {
+        Criteria criteria = Criteria.where("isPublic").is(true).orOperator(
+                Criteria.where("title").regex(searchTerm, "i"),
+                Criteria.where("description").regex(searchTerm, "i"),
+                Criteria.where("tags").is(searchTerm));
+        return findSummaryPage(criteria, pageable);
     }
 
     public List<Snippet> findByLanguage(String language) {
         return snippetRepository.findByLanguage(language);
     }
 
-    public List<Snippet> findSnippetsStarredByUser(String userId) {
-        return snippetRepository.findSnippetsStarredByUser(userId);
+    public List<SnippetSummary> findSnippetsStarredByUser(String userId) {
+        return findSummaries(Query.query(Criteria.where("starredBy").is(userId)));
     }
 
     @Transactional
@@ -64,6 +195,7 @@ public class SnippetService {
                                 List<String> tags, boolean isPublic) {
         Snippet snippet = snippetRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Snippet not found"));
+        boolean wasPublic = snippet.isPublic();
         
         if (title != null) {
             snippet.setTitle(title);
@@ -79,7 +211,9 @@ public class SnippetService {
         }
         snippet.setPublic(isPublic);
         
-        return snippetRepository.save(snippet);
+        Snippet saved = storeEdits(snippet);
+        evict(id, wasPublic || isPublic);
+        return saved;
     }
 
     @Transactional
@@ -91,6 +225,7 @@ public class SnippetService {
         if (!existingSnippet.getUserId().equals(userId)) {
             throw new RuntimeException("Not authorized to update this snippet");
         }
+        boolean wasPublic = existingSnippet.isPublic();
         
         // Update fields
         if (updatedSnippet.getTitle() != null) {
@@ -110,12 +245,15 @@ public class SnippetService {
         }
         existingSnippet.setPublic(updatedSnippet.isPublic());
         
-        return snippetRepository.save(existingSnippet);
+        Snippet saved = storeEdits(existingSnippet);
+        evict(id, wasPublic || saved.isPublic());
+        return saved;
     }
 
     @Transactional
     public void deleteSnippet(String id) {
         snippetRepository.deleteById(id);
+        evict(id, true);
     }
 
     @Transactional
@@ -129,15 +267,39 @@ public class SnippetService {
         }
         
         snippetRepository.deleteById(id);
+        evict(id, snippet.isPublic());
     }
 
-    @Transactional
+    /**
+     * Stars the snippet for {@code userId}, or unstars it if they had starred it.
+     * Each direction is one conditional update that only matches in the state it
+     * expects, so starredBy and starCount change together and concurrent stars
+     * are never lost.
+     */
     public Snippet toggleStar(String snippetId, String userId) {
-        Snippet snippet = snippetRepository.findById(snippetId)
-                .orElseThrow(() -> new RuntimeException("Snippet not found"));
-        
-        snippet.toggleStar(userId);
-        return snippetRepository.save(snippet);
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+        for (int attempt = 0; attempt < MAX_TOGGLE_ATTEMPTS; attempt++) {
+            Snippet toggled = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("id").is(snippetId).and("starredBy").ne(userId)),
+                    new Update().addToSet("starredBy", userId).inc("starCount", 1).currentDate("updatedAt"),
+                    returnNew, Snippet.class);
+            if (toggled == null) {
+                toggled = mongoTemplate.findAndModify(
+                        Query.query(Criteria.where("id").is(snippetId).and("starredBy").is(userId)),
+                        new Update().pull("starredBy", userId).inc("starCount", -1).currentDate("updatedAt"),
+                        returnNew, Snippet.class);
+            }
+            if (toggled != null) {
+                // Feed pages pick up star counts when their short TTL runs out
+                evict(snippetId, false);
+                return toggled;
+            }
+            if (!mongoTemplate.exists(Query.query(Criteria.where("id").is(snippetId)), Snippet.class)) {
+                throw new RuntimeException("Snippet not found");
+            }
+            // The same user toggled in between the two updates; look again
+        }
+        throw new RuntimeException("Snippet is being starred concurrently, try again");
     }
 
     public long getSnippetCountByUser(String userId) {
@@ -148,7 +310,130 @@ public class SnippetService {
         return snippetRepository.countPublicSnippets();
     }
 
-    public Page<Snippet> findPopularSnippets(Pageable pageable) {
-        return snippetRepository.findPopularSnippets(pageable);
+    public Page<SnippetSummary> findPopularSnippets(Pageable pageable) {
+        Pageable byStars = PageRequest.of(
+                pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "starCount", "id"));
+        return snippetFeedCache.get(SnippetFeedCache.POPULAR, byStars,
+                () -> findSummaryPage(Criteria.where("isPublic").is(true), byStars));
+    }
+
+    /**
+     * Fills in the fields that snippets written before they were stored lack:
+     * starCount, and preview, lineCount and codeBytes. Runs once the application
+     * is up, and does nothing when every snippet already has them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfill) {
+            return;
+        }
+        try {
+            // Computed by the server from starredBy in a single update
+            long counted = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("starCount").exists(false)),
+                    AggregationUpdate.update().set("starCount").toValue(ArrayOperators.Size.lengthOfArray(
+                            ConditionalOperators.ifNull("starredBy").then(List.of()))),
+                    Snippet.class).getModifiedCount();
+            if (counted > 0) {
+                log.info("Backfilled star counts of {} snippets", counted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to backfill snippet star counts", e);
+        }
+        backfillPreviews();
+    }
+
+    private void backfillPreviews() {
+        Query missing = Query.query(Criteria.where("preview").exists(false));
+        missing.fields().include("code");
+        int updated = 0;
+        try (Stream<Snippet> snippets = mongoTemplate.stream(missing, Snippet.class)) {
+            List<Snippet> batch = new ArrayList<>(PREVIEW_BATCH_SIZE);
+            for (Iterator<Snippet> iterator = snippets.iterator(); iterator.hasNext(); ) {
+                batch.add(iterator.next());
+                if (batch.size() == PREVIEW_BATCH_SIZE || !iterator.hasNext()) {
+                    updated += writePreviews(batch);
+                    batch.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to backfill snippet previews after {} snippets", updated, e);
+            return;
+        }
+        if (updated > 0) {
+            log.info("Backfilled previews of {} snippets", updated);
+        }
+    }
+
+    private int writePreviews(List<Snippet> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Snippet.class);
+        for (Snippet snippet : batch) {
+            snippet.refreshPreview(previewLines, previewChars);
+            bulk.updateOne(Query.query(Criteria.where("id").is(snippet.getId())), new Update()
+                    .set("preview", snippet.getPreview())
+                    .set("lineCount", snippet.getLineCount())
+                    .set("codeBytes", snippet.getCodeBytes()));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+
+    private Snippet store(Snippet snippet) {
+        snippet.refreshPreview(previewLines, previewChars);
+        snippet.setStarCount(snippet.getStarredBy().size());
+        return snippetRepository.save(snippet);
+    }
+
+    /**
+     * Writes the editable fields of an existing snippet with targeted $sets,
+     * leaving starredBy, starCount and the other counters to their own atomic
+     * updates.
+     */
+    private Snippet storeEdits(Snippet snippet) {
+        snippet.refreshPreview(previewLines, previewChars);
+        Update update = new Update()
+                .set("title", snippet.getTitle())
+                .set("code", snippet.getCode())
+                .set("description", snippet.getDescription())
+                .set("language", snippet.getLanguage())
+                .set("tags", snippet.getTags())
+                .set("isPublic", snippet.isPublic())
+                .set("preview", snippet.getPreview())
+                .set("lineCount", snippet.getLineCount())
+                .set("codeBytes", snippet.getCodeBytes())
+                .currentDate("updatedAt");
+        Snippet updated = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(snippet.getId())), update,
+                FindAndModifyOptions.options().returnNew(true), Snippet.class);
+        if (updated == null) {
+            throw new RuntimeException("Snippet not found");
+        }
+        return updated;
+    }
+
+    private Page<SnippetSummary> findSummaryPage(Criteria criteria, Pageable pageable) {
+        Query query = Query.query(criteria).with(pageable);
+        return PageableExecutionUtils.getPage(findSummaries(query), pageable,
+                () -> mongoTemplate.count(Query.query(criteria), Snippet.class));
+    }
+
+    /**
+     * Runs {@code query} against the snippets collection, loading only what a
+     * {@link SnippetSummary} shows.
+     */
+    private List<SnippetSummary> findSummaries(Query query) {
+        query.fields().include(SnippetSummary.FIELDS);
+        query.fields().project(ArrayOperators.Size.lengthOfArray(
+                ConditionalOperators.ifNull("likedBy").then(List.of()))).as("likeCount");
+        return mongoTemplate.find(query, SnippetSummary.class, mongoTemplate.getCollectionName(Snippet.class));
+    }
+
+    /**
+     * Drops cached copies of a changed snippet. Feed pages only list public
+     * snippets, so they are kept when a private one changes.
+     */
+    private void evict(String id, boolean listedInFeeds) {
+        snippetCache.invalidate(id);
+        if (listedInFeeds) {
+            snippetFeedCache.invalidateAll();
+        }
     }
 }
\ No newline at end of file
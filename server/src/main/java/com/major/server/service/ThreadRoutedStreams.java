@@ -0,0 +1,112 @@
+package com.major.server.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Replaces {@code System.out}, {@code System.err} and {@code System.in} with streams
+ * that forward to per-thread targets while a thread has some, and to the original
+ * streams otherwise. This lets in-process programs print and read through the
+ * standard streams without seeing each other's (or the server's) I/O.
+ */
+final class ThreadRoutedStreams {
+
+    private static final ThreadLocal<Targets> TARGETS = new ThreadLocal<>();
+    private static boolean installed;
+
+    private ThreadRoutedStreams() {
+    }
+
+    static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InputStream in = System.in;
+        // Unbuffered PrintStreams: bytes reach the router, and so the right target, on every write
+        System.setOut(new PrintStream(new RoutedOutput(out, false), true));
+        System.setErr(new PrintStream(new RoutedOutput(err, true), true));
+        System.setIn(new RoutedInput(in));
+        installed = true;
+    }
+
+    /**
+     * Routes the calling thread's standard streams until {@link #clear()}.
+     */
+    static void route(OutputStream out, OutputStream err, InputStream in) {
+        TARGETS.set(new Targets(out, err, in));
+    }
+
+    static void clear() {
+        TARGETS.remove();
+    }
+
+    private record Targets(OutputStream out, OutputStream err, InputStream in) {
+    }
+
+    private static final class RoutedOutput extends OutputStream {
+
+        private final OutputStream fallback;
+        private final boolean error;
+
+        RoutedOutput(OutputStream fallback, boolean error) {
+            this.fallback = fallback;
+            this.error = error;
+        }
+
+        private OutputStream target() {
+            Targets targets = TARGETS.get();
+            if (targets == null) {
+                return fallback;
+            }
+            return error ? targets.err() : targets.out();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    private static final class RoutedInput extends InputStream {
+
+        private final InputStream fallback;
+
+        RoutedInput(InputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private InputStream target() {
+            Targets targets = TARGETS.get();
+            return targets != null ? targets.in() : fallback;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.major.server.service;
+
+import com.major.server.model.UserTier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets keyed by caller (user id or client IP), sized per {@link UserTier}.
+ * <p>
+ * Buckets live in lock-striped, open-addressed tables of primitive arrays, so
+ * {@link #tryConsume} allocates nothing. A bucket idle long enough to have refilled
+ * under every tier carries no state and is dropped when its stripe needs room. If
+ * a stripe is full of active buckets, the least recently used one is dropped and
+ * the new key starts with an empty bucket, as does the dropped caller when it
+ * comes back, so rotating through keys can not hand anyone a fresh bucket.
+ * <p>
+ * A request may cost several tokens. One that costs more than a bucket holds is
+ * let through on a full bucket and leaves it in debt, so callers can not get
+ * past the refill rate by sending large requests.
+ */
+@Component
+public class TokenBucketRateLimiter {
+
+    // Token counts are kept in billionths of a token so refill needs no floating point state
+    private static final long SCALE = 1_000_000_000L;
+
+    private final Map<UserTier, Limit> limits = new EnumMap<>(UserTier.class);
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    // A bucket untouched this long is full whatever its tier, so forgetting it changes nothing
+    private final long idleNanos;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+
+    public TokenBucketRateLimiter(
+            @Value("${app.rate-limit.stripes:64}") int stripes,
+            @Value("${app.rate-limit.keys-per-stripe:1024}") int keysPerStripe,
+            @Value("${app.rate-limit.anonymous.capacity:10}") long anonymousCapacity,
+            @Value("${app.rate-limit.anonymous.refill-per-second:0.2}") double anonymousRefill,
+            @Value("${app.rate-limit.authenticated.capacity:30}") long authenticatedCapacity,
+            @Value("${app.rate-limit.authenticated.refill-per-second:1.0}") double authenticatedRefill,
+            @Value("${app.rate-limit.pro.capacity:120}") long proCapacity,
+            @Value("${app.rate-limit.pro.refill-per-second:4.0}") double proRefill) {
+        limits.put(UserTier.ANONYMOUS, new Limit(anonymousCapacity, anonymousRefill));
+        limits.put(UserTier.AUTHENTICATED, new Limit(authenticatedCapacity, authenticatedRefill));
+        limits.put(UserTier.PRO, new Limit(proCapacity, proRefill));
+
+        this.idleNanos = limits.values().stream().mapToLong(limit -> limit.fullRefillNanos).max().orElse(Long.MAX_VALUE);
+
+        int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(keysPerStripe, takeovers);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Takes one token from {@code key}'s bucket.
+     *
+     * @return the whole tokens left when the call is allowed, or when it is not,
+     *         minus the number of milliseconds until a token is available
+     */
+    public long tryConsume(String key, UserTier tier) {
+        return tryConsumeTokens(key, tier, 1, System.nanoTime());
+    }
+
+    /**
+     * Takes {@code tokens} tokens from {@code key}'s bucket, as {@link #tryConsume}.
+     */
+    public long tryConsumeTokens(String key, UserTier tier, long tokens) {
+        return tryConsumeTokens(key, tier, tokens, System.nanoTime());
+    }
+
+    long tryConsume(String key, UserTier tier, long now) {
+        return tryConsumeTokens(key, tier, 1, now);
+    }
+
+    long tryConsumeTokens(String key, UserTier tier, long tokens, long now) {
+        Limit limit = limits.get(tier);
+        int hash = spread(key.hashCode());
+        long result = stripes[hash & stripeMask].consume(key, hash >>> 16, limit, Math.max(1, tokens), idleNanos, now);
+        if (result >= 0) {
+            allowed.increment();
+        } else {
+            rejected.increment();
+        }
+        return result;
+    }
+
+    public long getCapacity(UserTier tier) {
+        return limits.get(tier).capacity;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("allowed", allowed.sum());
+        stats.put("rejected", rejected.sum());
+        // Active buckets dropped to make room for a new key in a full stripe
+        stats.put("takeovers", takeovers.sum());
+        limits.forEach((tier, limit) -> stats.put(tier.name().toLowerCase(),
+                Map.of("capacity", limit.capacity, "refillPerSecond", limit.refillPerNano)));
+        return stats;
+    }
+
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    private static final class Limit {
+
+        final long capacity;
+        final long scaledCapacity;
+        // Scaled tokens gained per nanosecond, which with SCALE = 1e9 equals tokens per second
+        final double refillPerNano;
+        final long fullRefillNanos;
+
+        Limit(long capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.scaledCapacity = capacity * SCALE;
+            this.refillPerNano = refillPerSecond;
+            this.fullRefillNanos = refillPerSecond > 0 ? (long) Math.ceil(scaledCapacity / refillPerSecond) : Long.MAX_VALUE;
+        }
+
+        long refill(long tokens, long elapsedNanos) {
+            if (tokens >= 0 && elapsedNanos >= fullRefillNanos) {
+                return scaledCapacity;
+            }
+            double gained = elapsedNanos * refillPerNano;
+            return gained >= scaledCapacity - tokens ? scaledCapacity : tokens + (long) gained;
+        }
+
+        long nanosUntil(long tokens, long target) {
+            if (refillPerNano <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return (long) Math.ceil((target - tokens) / refillPerNano);
+        }
+    }
+
+    /**
+     * One open-addressed table with linear probing, guarded by its own monitor.
+     */
+    private static final class Stripe {
+
+        private final String[] keys;
+        private final long[] tokens;
+        private final long[] updatedAt;
+        private final int mask;
+        private final int maxSize;
+        private final LongAdder takeovers;
+        private int size;
+
+        Stripe(int expectedKeys, LongAdder takeovers) {
+            int slots = Integer.highestOneBit(Math.max(2, expectedKeys * 2 - 1)) << 1;
+            this.keys = new String[slots];
+            this.tokens = new long[slots];
+            this.updatedAt = new long[slots];
+            this.mask = slots - 1;
+            this.maxSize = slots * 3 / 4;
+            this.takeovers = takeovers;
+        }
+
+        synchronized long consume(String key, int hash, Limit limit, long cost, long idleNanos, long now) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                slot = insert(key, hash, limit, idleNanos, now);
+            }
+            long available = limit.refill(tokens[slot], now - updatedAt[slot]);
+
+            updatedAt[slot] = now;
+            // More than the bucket holds only needs a full bucket, and the rest is owed
+            long required = Math.min(cost, limit.capacity) * SCALE;
+            if (available >= required) {
+                tokens[slot] = available - cost * SCALE;
+                return Math.max(tokens[slot], 0) / SCALE;
+            }
+            tokens[slot] = available;
+            long waitNanos = limit.nanosUntil(available, required);
+            return -(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        }
+
+        private int find(String key, int hash) {
+            for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(key)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int insert(String key, int hash, Limit limit, long idleNanos, long now) {
+            if (size >= maxSize) {
+                evictIdle(idleNanos, now);
+            }
+            long initial = limit.scaledCapacity;
+            if (size >= maxSize) {
+                // Still full of active buckets: make room, but a bucket created this way starts empty
+                delete(leastRecentlyUsed());
+                takeovers.increment();
+                initial = 0;
+            }
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            tokens[slot] = initial;
+            updatedAt[slot] = now;
+            size++;
+            return slot;
+        }
+
+        /**
+         * Drops buckets that have refilled completely; they behave exactly like absent ones.
+         * Buckets that were left in debt are kept until they are used again.
+         */
+        private void evictIdle(long idleNanos, long now) {
+            for (int slot = 0; slot <= mask; slot++) {
+                while (keys[slot] != null && tokens[slot] >= 0 && now - updatedAt[slot] >= idleNanos) {
+                    delete(slot);
+                }
+            }
+        }
+
+        private int leastRecentlyUsed() {
+            int oldest = -1;
+            for (int slot = 0; slot <= mask; slot++) {
+                if (keys[slot] != null && (oldest < 0 || updatedAt[slot] < updatedAt[oldest])) {
+                    oldest = slot;
+                }
+            }
+            return oldest;
+        }
+
+        /**
+         * Removes a slot and shifts later members of its probe chain back, so that
+         * lookups never need tombstones.
+         */
+        private void delete(int slot) {
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != null) {
+                int home = spread(keys[next].hashCode()) >>> 16 & mask;
+                // Move the entry if the hole lies cyclically between its home slot and its position
+                boolean movable = hole <= next
+                        ? home <= hole || home > next
+                        : home <= hole && home > next;
+                if (movable) {
+                    keys[hole] = keys[next];
+                    tokens[hole] = tokens[next];
+                    updatedAt[hole] = updatedAt[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = null;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.major.server.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a request names a language that no Piston runtime provides.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedLanguageException extends RuntimeException {
+
+    public UnsupportedLanguageException(String language) {
+        super("Unsupported language: " + language);
+    }
+}
@@ -0,0 +1,44 @@
+package com.major.server.service;
+
+import com.major.server.model.User;
+import com.major.server.model.UserTier;
+import com.major.server.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps the authenticated principal (the user's email) to a {@link UserTier}.
+ * Lookups are cached briefly so that a Pro upgrade takes effect within the TTL.
+ */
+@Component
+public class UserTierResolver {
+
+    private final UserRepository userRepository;
+    private final WeightedLruCache<String, UserTier> tiers;
+
+    public UserTierResolver(
+            UserRepository userRepository,
+            @Value("${app.rate-limit.tier-cache.max-entries:10000}") long maxEntries,
+            @Value("${app.rate-limit.tier-cache.ttl-ms:60000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.tiers = new WeightedLruCache<>(maxEntries, Long.MAX_VALUE, ttlMs, tier -> 1);
+    }
+
+    /**
+     * Blocking on a cache miss; call from servlet threads only.
+     */
+    public UserTier resolve(String userId) {
+        if (userId == null) {
+            return UserTier.ANONYMOUS;
+        }
+        UserTier tier = tiers.get(userId);
+        if (tier == null) {
+            tier = userRepository.findByEmail(userId)
+                    .map(User::isPro)
+                    .map(pro -> pro ? UserTier.PRO : UserTier.AUTHENTICATED)
+                    .orElse(UserTier.AUTHENTICATED);
+            tiers.put(userId, tier);
+        }
+        return tier;
+    }
+}
@@ -0,0 +1,117 @@
+'use strict';
+// Warm Node.js worker for the local execution backend.
+//
+// Reads one JSON job per line from stdin and answers with one JSON result per
+// line on stdout. Each job runs synchronously in a fresh vm context with a
+// timeout; the worker is started before the job arrives, so a run skips Node
+// start-up. The context only exposes console, a minimal process object and
+// require('fs').readFileSync for stdin, but vm is not a sandbox: a program can
+// reach this process (and so the next job's code and stdin) with a one-liner.
+// The backend therefore sends each worker a single job and then replaces it.
+
+const readline = require('readline');
+const util = require('util');
+const vm = require('vm');
+
+class ExitSignal {
+    constructor(code) {
+        this.code = code;
+    }
+}
+
+// Cuts the harness frames off a stack trace so it ends in the user's code
+function userStack(error) {
+    const stack = (error && error.stack) || String(error);
+    const lines = stack.split('\n');
+    const harness = lines.findIndex((frame) => frame.includes('at Script.runInContext'));
+    return (harness >= 0 ? lines.slice(0, harness) : lines).join('\n');
+}
+
+function run(job) {
+    const maxOutput = job.maxOutputBytes;
+    const stdin = job.stdin || '';
+    const out = [];
+    const err = [];
+    let size = 0;
+    let truncated = false;
+
+    const writer = (target) => (chunk) => {
+        let text = String(chunk);
+        const room = maxOutput - size;
+        if (text.length > room) {
+            truncated = true;
+            text = text.slice(0, Math.max(room, 0));
+        }
+        size += text.length;
+        target.push(text);
+        return true;
+    };
+    const writeOut = writer(out);
+    const writeErr = writer(err);
+    const line = (write) => (...args) => write(util.format(...args) + '\n');
+
+    const fs = {
+        readFileSync(file, encoding) {
+            if (file === 0 || file === '/dev/stdin') {
+                return encoding ? stdin : Buffer.from(stdin);
+            }
+            throw new Error('File system access is not available');
+        }
+    };
+    const sandbox = {
+        console: {
+            log: line(writeOut), info: line(writeOut), debug: line(writeOut),
+            warn: line(writeErr), error: line(writeErr)
+        },
+        process: {
+            argv: ['node', 'main.js'],
+            env: {},
+            stdout: { write: writeOut },
+            stderr: { write: writeErr },
+            exit(code) {
+                throw new ExitSignal(code === undefined ? 0 : code);
+            }
+        },
+        require(name) {
+            if (name === 'fs') {
+                return fs;
+            }
+            if (name === 'util') {
+                return util;
+            }
+            throw new Error(`Cannot find module '${name}'`);
+        }
+    };
+
+    let code = 0;
+    let signal = null;
+    try {
+        vm.runInNewContext(job.code, sandbox, { filename: 'main.js', timeout: job.timeoutMs });
+    } catch (e) {
+        if (e instanceof ExitSignal) {
+            code = e.code;
+        } else if (e && e.code === 'ERR_SCRIPT_EXECUTION_TIMEOUT') {
+            code = null;
+            signal = 'SIGKILL';
+        } else {
+            writeErr(userStack(e) + '\n');
+            code = 1;
+        }
+    }
+    return { stdout: out.join(''), stderr: err.join(''), code, signal, truncated };
+}
+
+process.stdout.write(JSON.stringify({ type: 'ready', language: 'javascript', version: process.versions.node }) + '\n');
+
+readline.createInterface({ input: process.stdin, terminal: false }).on('line', (input) => {
+    if (!input.trim()) {
+        return;
+    }
+    let result;
+    try {
+        result = run(JSON.parse(input));
+    } catch (e) {
+        result = { stdout: '', stderr: `Worker error: ${e.message}`, code: null, signal: null, truncated: false };
+    }
+    process.stdout.write(JSON.stringify(result) + '\n');
+});
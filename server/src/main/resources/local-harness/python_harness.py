@@ -0,0 +1,178 @@
+"""Warm Python worker for the local execution backend.
+
+Reads one JSON job per line from stdin and answers with one JSON result per
+line on stdout. Each job runs in a child forked from this already-initialised
+interpreter, so a run skips interpreter start-up. The child gets its own
+process group and rlimits; the parent enforces the wall-clock timeout and the
+output cap.
+"""
+import json
+import linecache
+import os
+import platform
+import resource
+import select
+import signal
+import sys
+import time
+import traceback
+
+# Imported once here so forked children get them for free
+PRELOADED = ("bisect", "collections", "functools", "heapq", "itertools", "json", "math", "random", "re", "string")
+
+CHUNK = 65536
+
+
+def child(job, in_r, out_w, err_w, unused):
+    os.setsid()
+    cpu = job.get("cpuSeconds")
+    if cpu:
+        resource.setrlimit(resource.RLIMIT_CPU, (cpu, cpu + 1))
+    memory = job.get("memoryBytes")
+    if memory:
+        resource.setrlimit(resource.RLIMIT_AS, (memory, memory))
+    resource.setrlimit(resource.RLIMIT_FSIZE, (job["maxOutputBytes"], job["maxOutputBytes"]))
+
+    os.dup2(in_r, 0)
+    os.dup2(out_w, 1)
+    os.dup2(err_w, 2)
+    for fd in (in_r, out_w, err_w) + unused:
+        os.close(fd)
+    sys.stdin = open(0, "r", closefd=False)
+    sys.stdout = open(1, "w", closefd=False)
+    sys.stderr = open(2, "w", closefd=False)
+
+    # Lets tracebacks show the offending source lines
+    linecache.cache["main.py"] = (len(job["code"]), None, job["code"].splitlines(True), "main.py")
+
+    code = 0
+    try:
+        exec(compile(job["code"], "main.py", "exec"), {"__name__": "__main__", "__builtins__": __builtins__})
+    except SystemExit as e:
+        code = e.code if isinstance(e.code, int) else (0 if e.code is None else 1)
+        if e.code is not None and not isinstance(e.code, int):
+            print(e.code, file=sys.stderr)
+    except BaseException:
+        # Drop this harness frame so the traceback starts in the user's code
+        error_type, error, tb = sys.exc_info()
+        traceback.print_exception(error_type, error, tb.tb_next)
+        code = 1
+    finally:
+        try:
+            sys.stdout.flush()
+            sys.stderr.flush()
+        except BaseException:
+            pass
+    os._exit(code)
+
+
+def kill(pid):
+    for target in (lambda: os.killpg(pid, signal.SIGKILL), lambda: os.kill(pid, signal.SIGKILL)):
+        try:
+            target()
+        except (ProcessLookupError, PermissionError):
+            pass
+
+
+def run(job):
+    in_r, in_w = os.pipe()
+    out_r, out_w = os.pipe()
+    err_r, err_w = os.pipe()
+
+    pid = os.fork()
+    if pid == 0:
+        child(job, in_r, out_w, err_w, (in_w, out_r, err_r))
+
+    os.close(in_r)
+    os.close(out_w)
+    os.close(err_w)
+
+    deadline = time.monotonic() + job["timeoutMs"] / 1000.0
+    max_output = job["maxOutputBytes"]
+    pending = (job.get("stdin") or "").encode("utf-8")
+    buffers = {out_r: bytearray(), err_r: bytearray()}
+    readers = [out_r, err_r]
+    writers = [in_w] if pending else []
+    if not pending:
+        os.close(in_w)
+    total = 0
+    truncated = False
+    timed_out = False
+
+    while readers:
+        remaining = deadline - time.monotonic()
+        if remaining <= 0:
+            timed_out = True
+            kill(pid)
+            break
+        readable, writable, _ = select.select(readers, writers, [], remaining)
+        for fd in writable:
+            try:
+                written = os.write(fd, pending[:CHUNK])
+                pending = pending[written:]
+            except BrokenPipeError:
+                pending = b""
+            if not pending:
+                os.close(fd)
+                writers = []
+        for fd in readable:
+            chunk = os.read(fd, CHUNK)
+            if not chunk:
+                readers.remove(fd)
+                os.close(fd)
+                continue
+            room = max_output - total
+            if len(chunk) > room:
+                truncated = True
+                chunk = chunk[:max(room, 0)]
+            buffers[fd] += chunk
+            total += len(chunk)
+
+    for fd in readers + writers:
+        os.close(fd)
+
+    # The child may close its output and keep running
+    while True:
+        waited, status = os.waitpid(pid, os.WNOHANG)
+        if waited:
+            break
+        if time.monotonic() >= deadline:
+            timed_out = True
+            kill(pid)
+            _, status = os.waitpid(pid, 0)
+            break
+        time.sleep(0.001)
+
+    exit_code = os.WEXITSTATUS(status) if os.WIFEXITED(status) else None
+    signal_name = signal.Signals(os.WTERMSIG(status)).name if os.WIFSIGNALED(status) else None
+    if timed_out:
+        signal_name = "SIGKILL"
+
+    return {
+        "stdout": buffers[out_r].decode("utf-8", "replace"),
+        "stderr": buffers[err_r].decode("utf-8", "replace"),
+        "code": exit_code,
+        "signal": signal_name,
+        "truncated": truncated,
+    }
+
+
+def main():
+    for name in PRELOADED:
+        __import__(name)
+    protocol = sys.stdout
+    protocol.write(json.dumps({"type": "ready", "language": "python", "version": platform.python_version()}) + "\n")
+    protocol.flush()
+    for line in sys.stdin:
+        if not line.strip():
+            continue
+        try:
+            result = run(json.loads(line))
+        except Exception as e:
+            result = {"stdout": "", "stderr": "Worker error: %s" % e, "code": None, "signal": None, "truncated": False}
+        protocol.write(json.dumps(result) + "\n")
+        protocol.flush()
+
+
+if __name__ == "__main__":
+    main()
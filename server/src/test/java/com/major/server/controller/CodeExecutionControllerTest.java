@@ -0,0 +1,72 @@
+package com.major.server.controller;
+
+import com.major.server.config.RateLimitFilter;
+import com.major.server.dto.BatchExecutionRequest;
+import com.major.server.dto.BatchExecutionResponse;
+import com.major.server.model.UserTier;
+import com.major.server.service.BatchExecutionService;
+import com.major.server.service.CodeExecutionService;
+import com.major.server.service.ExecutionJobQueue;
+import com.major.server.service.ExecutionStatsService;
+import com.major.server.service.ExecutionStreamService;
+import com.major.server.service.TokenBucketRateLimiter;
+import com.major.server.service.UserTierResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CodeExecutionControllerTest {
+
+    private BatchExecutionService batchExecutionService;
+    private CodeExecutionController controller;
+    private MockHttpServletRequest httpRequest;
+
+    @BeforeEach
+    public void setUp() {
+        batchExecutionService = mock(BatchExecutionService.class);
+        when(batchExecutionService.judge(any(), any(), any())).thenReturn(Mono.just(new BatchExecutionResponse()));
+        UserTierResolver userTierResolver = mock(UserTierResolver.class);
+        when(userTierResolver.resolve(null)).thenReturn(UserTier.ANONYMOUS);
+        // Anonymous callers hold three tokens
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, 16, 3, 0.001, 5, 1.0, 10, 1.0);
+        controller = new CodeExecutionController(mock(CodeExecutionService.class), mock(ExecutionJobQueue.class),
+                mock(ExecutionStreamService.class), batchExecutionService, rateLimiter,
+                mock(ExecutionStatsService.class), userTierResolver);
+
+        httpRequest = new MockHttpServletRequest("POST", "/api/execute/batch");
+        httpRequest.setAttribute(RateLimitFilter.KEY_ATTRIBUTE, "1.2.3.4");
+    }
+
+    @Test
+    public void testBatchLargerThanTheRemainingTokensIsRejectedWithRateLimitHeaders() {
+        ResponseEntity<BatchExecutionResponse> allowed = controller.judge(batch(2), httpRequest).block();
+        assertEquals(HttpStatus.OK, allowed.getStatusCode());
+        assertEquals("3", allowed.getHeaders().getFirst(RateLimitFilter.LIMIT_HEADER));
+        assertEquals("1", allowed.getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+
+        ResponseEntity<BatchExecutionResponse> rejected = controller.judge(batch(2), httpRequest).block();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatusCode());
+        assertEquals("3", rejected.getHeaders().getFirst(RateLimitFilter.LIMIT_HEADER));
+        assertEquals("0", rejected.getHeaders().getFirst(RateLimitFilter.REMAINING_HEADER));
+        assertNotNull(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(batchExecutionService, times(1)).judge(any(), any(), any());
+    }
+
+    private static BatchExecutionRequest batch(int testCases) {
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setCode("print(input())");
+        request.setLanguage("python");
+        request.setTestCases(Collections.nCopies(testCases, new BatchExecutionRequest.TestCase()));
+        return request;
+    }
+}
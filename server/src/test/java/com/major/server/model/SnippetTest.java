@@ -0,0 +1,57 @@
+package com.major.server.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnippetTest {
+
+    private Snippet withCode(String code) {
+        Snippet snippet = Snippet.builder().code(code).build();
+        snippet.refreshPreview(2, 20);
+        return snippet;
+    }
+
+    @Test
+    public void testPreviewKeepsTheFirstLines() {
+        Snippet snippet = withCode("a = 1\r\nb = 2\nc = 3\n");
+
+        assertEquals("a = 1\r\nb = 2", snippet.getPreview());
+        assertEquals(3, snippet.getLineCount());
+        assertEquals(19, snippet.getCodeBytes());
+    }
+
+    @Test
+    public void testPreviewIsCutAtMaxChars() {
+        Snippet snippet = withCode("x".repeat(19) + "\uD83D\uDE00 and more");
+
+        // The emoji's surrogate pair is not split
+        assertEquals("x".repeat(19), snippet.getPreview());
+        assertEquals(1, snippet.getLineCount());
+        assertEquals(32, snippet.getCodeBytes());
+    }
+
+    @Test
+    public void testEmptyCode() {
+        Snippet snippet = withCode(null);
+
+        assertEquals("", snippet.getPreview());
+        assertEquals(0, snippet.getLineCount());
+        assertEquals(0, snippet.getCodeBytes());
+    }
+
+    @Test
+    public void testStarCountFollowsStarredBy() {
+        Snippet snippet = Snippet.builder().build();
+
+        snippet.toggleStar("u1");
+        snippet.starBy("u1");
+        snippet.starBy("u2");
+        assertEquals(2, snippet.getStarCount());
+
+        snippet.toggleStar("u1");
+        snippet.unstarBy("u1");
+        assertEquals(1, snippet.getStarCount());
+        assertTrue(snippet.isStarredBy("u2"));
+    }
+}
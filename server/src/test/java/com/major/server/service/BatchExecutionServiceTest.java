@@ -0,0 +1,110 @@
+package com.major.server.service;
+
+import com.major.server.dto.BatchExecutionRequest;
+import com.major.server.dto.BatchExecutionResponse;
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BatchExecutionServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCasesRunInParallelAndAreJudgedAndSavedTogetherInInputOrder() {
+        CodeExecutionService codeExecutionService = mock(CodeExecutionService.class);
+        CodeExecutionStore codeExecutionStore = mock(CodeExecutionStore.class);
+        when(codeExecutionStore.completeAll(anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable((List<CodeExecution>) invocation.getArgument(0)));
+        doCallRealMethod().when(codeExecutionService).updateExecutionWithResponse(any(), any());
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(codeExecutionService.runProgram(any(), eq("print(input())"), anyString(), eq(UserTier.PRO)))
+                .thenAnswer(invocation -> {
+                    String stdin = invocation.getArgument(2);
+                    // Earlier cases take longer, so they finish out of order
+                    Mono<PistonExecuteResponse> response = switch (stdin) {
+                        case "ok" -> Mono.just(response(new PistonExecuteResponse.Stage("ok\n", "", 0, null, false)));
+                        case "nope" -> Mono.just(response(new PistonExecuteResponse.Stage("nope\n", "", 0, null, false)));
+                        case "crash" -> Mono.just(response(new PistonExecuteResponse.Stage("", "Traceback", 1, null, false)));
+                        default -> Mono.error(new ExecutionRejectedException("Execution service is at capacity"));
+                    };
+                    return Mono.delay(Duration.ofMillis(200 - 40L * stdin.length()))
+                            .then(response)
+                            .doOnSubscribe(subscription -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                            .doOnTerminate(running::decrementAndGet);
+                });
+
+        BatchExecutionService service = new BatchExecutionService(codeExecutionService, codeExecutionStore);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+
+        BatchExecutionResponse response = service.judge(
+                batch(testCase("ok", "ok"), testCase("nope", "ok"), testCase("crash", "ok"), testCase("reject", "ok")),
+                "alice", UserTier.PRO).block(Duration.ofSeconds(5));
+
+        assertEquals(4, response.getTotal());
+        assertEquals(1, response.getPassed());
+        assertEquals(List.of(0, 1, 2, 3), response.getResults().stream().map(BatchExecutionResponse.CaseResult::getIndex).toList());
+        assertEquals(List.of(
+                BatchExecutionResponse.Verdict.PASSED,
+                BatchExecutionResponse.Verdict.WRONG_ANSWER,
+                BatchExecutionResponse.Verdict.RUNTIME_ERROR,
+                BatchExecutionResponse.Verdict.REJECTED),
+                response.getResults().stream().map(BatchExecutionResponse.CaseResult::getVerdict).toList());
+        assertEquals(2, maxRunning.get(), "At most `parallelism` cases run at once");
+
+        ArgumentCaptor<List<CodeExecution>> saved = ArgumentCaptor.forClass(List.class);
+        verify(codeExecutionStore, times(1)).completeAll(saved.capture());
+        assertEquals(4, saved.getValue().size());
+        assertTrue(saved.getValue().stream().allMatch(execution -> response.getBatchId().equals(execution.getBatchId())));
+        assertEquals(CodeExecution.ExecutionStatus.REJECTED, saved.getValue().get(3).getStatus());
+        verify(codeExecutionStore, never()).complete(any());
+    }
+
+    @Test
+    public void testNormalizeIgnoresTrailingWhitespaceAndLineEndings() {
+        assertEquals(BatchExecutionService.normalize("1 2\n3\n"), BatchExecutionService.normalize("1 2  \r\n3"));
+        assertEquals(BatchExecutionService.normalize("42"), BatchExecutionService.normalize("42\n\n\n"));
+        assertEquals("", BatchExecutionService.normalize(null));
+    }
+
+    @Test
+    public void testNormalizeKeepsSignificantDifferences() {
+        assertNotEquals(BatchExecutionService.normalize("1 2"), BatchExecutionService.normalize("1  2"));
+        assertNotEquals(BatchExecutionService.normalize("a\n\nb"), BatchExecutionService.normalize("a\nb"));
+        assertNotEquals(BatchExecutionService.normalize(" x"), BatchExecutionService.normalize("x"));
+    }
+
+    private static PistonExecuteResponse response(PistonExecuteResponse.Stage run) {
+        return new PistonExecuteResponse("python", "3.10.0", null, run);
+    }
+
+    private static BatchExecutionRequest.TestCase testCase(String stdin, String expectedOutput) {
+        BatchExecutionRequest.TestCase testCase = new BatchExecutionRequest.TestCase();
+        testCase.setStdin(stdin);
+        testCase.setExpectedOutput(expectedOutput);
+        return testCase;
+    }
+
+    private static BatchExecutionRequest batch(BatchExecutionRequest.TestCase... testCases) {
+        BatchExecutionRequest request = new BatchExecutionRequest();
+        request.setCode("print(input())");
+        request.setLanguage("python");
+        request.setTestCases(List.of(testCases));
+        return request;
+    }
+}
@@ -0,0 +1,43 @@
+package com.major.server.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensWhenFailureRateExceedsThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 60000, 1);
+
+        breaker.onSuccess();
+        breaker.onError();
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "Should wait for the minimum number of calls");
+
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission(), "Open breaker should fail fast");
+    }
+
+    @Test
+    public void testHalfOpenProbeClosesOrReopensBreaker() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(10, 1, 0.5, 1, 1);
+
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(5);
+
+        assertTrue(breaker.tryAcquirePermission(), "A trial call should be let through after the open period");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission(), "Only the configured number of trial calls is allowed");
+
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(5);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,75 @@
+package com.major.server.service;
+
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CodeExecutionServiceTest {
+
+    private static final PistonRuntime PYTHON = new PistonRuntime("python", "3.10.0");
+
+    private ExecutionBackend backend;
+    private CodeExecutionService service;
+
+    @BeforeEach
+    public void setUp() {
+        CodeExecutionStore store = mock(CodeExecutionStore.class);
+        when(store.complete(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        PistonRuntimeRegistry registry = mock(PistonRuntimeRegistry.class);
+        when(registry.resolve("python")).thenReturn(PYTHON);
+        backend = mock(ExecutionBackend.class);
+        when(backend.supports(PYTHON)).thenReturn(true);
+
+        // One anonymous slot, plenty for everyone else
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.execution.lanes.anonymous.max-concurrent", "1");
+        ExecutionLaneScheduler scheduler = new ExecutionLaneScheduler(environment, "weighted", 8, 10000);
+
+        service = new CodeExecutionService(store, mock(CodeBlobStore.class), List.of(backend),
+                mock(ExecutionResultCache.class), new InFlightExecutions(true), registry,
+                mock(ExecutionStatsService.class), scheduler);
+    }
+
+    @Test
+    public void testProRequestDoesNotWaitInTheLaneOfAnIdenticalAnonymousOne() {
+        PistonExecuteResponse.Stage run = new PistonExecuteResponse.Stage("1\n", "", 0, null, false);
+        when(backend.execute(PYTHON, "print(1)", null))
+                .thenReturn(Mono.just(new PistonExecuteResponse("python", "3.10.0", null, run)));
+        when(backend.execute(eq(PYTHON), eq("while True: pass"), any())).thenReturn(Mono.never());
+
+        // Holds the only anonymous slot, so the anonymous print(1) stays queued
+        service.runExecution(execution(), request("while True: pass"), UserTier.ANONYMOUS).subscribe();
+        service.runExecution(execution(), request("print(1)"), UserTier.ANONYMOUS).subscribe();
+
+        CodeExecution pro = service.runExecution(execution(), request("print(1)"), UserTier.PRO)
+                .block(Duration.ofSeconds(2));
+
+        assertEquals(CodeExecution.ExecutionStatus.SUCCESS, pro.getStatus());
+        assertEquals("1\n", pro.getOutput());
+    }
+
+    private static CodeExecution execution() {
+        return CodeExecution.builder().language("python").status(CodeExecution.ExecutionStatus.PENDING).build();
+    }
+
+    private static CodeExecutionRequest request(String code) {
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setCode(code);
+        request.setLanguage("python");
+        return request;
+    }
+}
@@ -0,0 +1,97 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import com.major.server.repository.ReactiveCodeExecutionRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CodeExecutionStoreTest {
+
+    private ReactiveCodeExecutionRepository repository;
+    private ReactiveBulkOperations bulkOperations;
+    private CodeExecutionStore store;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(ReactiveCodeExecutionRepository.class);
+        bulkOperations = mock(ReactiveBulkOperations.class);
+        ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+        when(template.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(CodeExecution.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        store = new CodeExecutionStore(repository, template, mock(CodeBlobStore.class), mock(ExecutionStatsService.class),
+                true, 2, 3, 1000, 0);
+    }
+
+    @Test
+    public void testPendingExecutionIsServedFromMemory() {
+        CodeExecution execution = store.create(CodeExecution.builder().code("x").language("python").build()).block();
+
+        assertNotNull(execution.getId());
+        assertSame(execution, store.findById(execution.getId()).block());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void testCompletedExecutionsAreWrittenInOneBulkInsert() {
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        CodeExecution first = store.create(CodeExecution.builder().build()).block();
+        CodeExecution second = store.create(CodeExecution.builder().build()).block();
+
+        store.complete(first).block();
+        verify(bulkOperations, never()).execute();
+        store.complete(second).block();
+
+        verify(bulkOperations, times(1)).insert(List.of(first, second));
+        verify(bulkOperations, times(1)).execute();
+        verify(repository, never()).save(any());
+        when(repository.findById(first.getId())).thenReturn(Mono.empty());
+        assertNull(store.findById(first.getId()).block(), "Written executions are read back from Mongo");
+    }
+
+    @Test
+    public void testFailedFlushKeepsExecutionsForRetry() {
+        when(bulkOperations.execute())
+                .thenReturn(Mono.error(new IllegalStateException("mongo down")))
+                .thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        CodeExecution execution = store.create(CodeExecution.builder().build()).block();
+        store.complete(execution).block();
+
+        store.flush(true).block();
+        assertSame(execution, store.findById(execution.getId()).block());
+        assertEquals(1, store.stats().get("awaitingFlush"));
+
+        store.flush(true).block();
+        assertEquals(0, store.stats().get("awaitingFlush"));
+        assertEquals(1L, store.stats().get("documentsWritten"));
+    }
+
+    @Test
+    public void testFullBufferFallsBackToDirectWrites() {
+        when(bulkOperations.execute()).thenReturn(Mono.error(new IllegalStateException("mongo down")));
+        when(repository.save(any(CodeExecution.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        for (int i = 0; i < 3; i++) {
+            store.complete(store.create(CodeExecution.builder().build()).block()).block();
+        }
+        store.flush(true).block();
+
+        CodeExecution pending = store.create(CodeExecution.builder().code("pending").build()).block();
+        CodeExecution judged = CodeExecution.builder().code("judged").build();
+        store.completeAll(List.of(judged)).blockLast();
+
+        verify(repository).save(pending);
+        verify(repository).save(judged);
+        assertEquals(3, store.stats().get("unwritten"));
+        assertEquals(2L, store.stats().get("bufferFull"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ExecutionBlobCallbacksTest {
+
+    private CodeBlobStore blobStore;
+    private ExecutionBlobCallbacks callbacks;
+
+    @BeforeEach
+    public void setUp() {
+        blobStore = mock(CodeBlobStore.class);
+        when(blobStore.store(anyString())).thenAnswer(invocation ->
+                Mono.just(ContentHash.sha256Hex(invocation.getArgument(0))));
+        callbacks = new ExecutionBlobCallbacks(blobStore);
+        ReflectionTestUtils.setField(callbacks, "enabled", true);
+        ReflectionTestUtils.setField(callbacks, "inlineOutputChars", 8);
+    }
+
+    @Test
+    public void testCodeIsStoredOnceAndStrippedFromDocument() {
+        CodeExecution execution = CodeExecution.builder().code("print(1)").language("python").build();
+
+        Mono.from(callbacks.onBeforeConvert(execution, "code_executions")).block();
+        execution.setOutput("1");
+        Mono.from(callbacks.onBeforeConvert(execution, "code_executions")).block();
+
+        verify(blobStore, times(1)).store("print(1)");
+        assertEquals(ContentHash.sha256Hex("print(1)"), execution.getCodeHash());
+        assertEquals("print(1)", execution.getCode(), "The entity keeps its code in memory");
+
+        Document document = new Document("code", "print(1)").append("output", "1");
+        Mono.from(callbacks.onBeforeSave(execution, document, "code_executions")).block();
+        assertFalse(document.containsKey("code"));
+        assertEquals("1", document.get("output"), "Short output stays inline");
+    }
+
+    @Test
+    public void testLargeOutputIsStoredAsBlob() {
+        CodeExecution execution = CodeExecution.builder().code("x").output("0123456789").build();
+
+        Mono.from(callbacks.onBeforeConvert(execution, "code_executions")).block();
+
+        assertEquals(ContentHash.sha256Hex("0123456789"), execution.getOutputHash());
+        Document document = new Document("output", "0123456789");
+        Mono.from(callbacks.onBeforeSave(execution, document, "code_executions")).block();
+        assertFalse(document.containsKey("output"));
+    }
+}
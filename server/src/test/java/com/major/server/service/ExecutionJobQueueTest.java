@@ -0,0 +1,90 @@
+package com.major.server.service;
+
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ExecutionJobQueueTest {
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private CodeExecutionService codeExecutionService;
+    private ExecutionJobQueue queue;
+
+    @BeforeEach
+    public void setUp() {
+        codeExecutionService = mock(CodeExecutionService.class);
+        when(codeExecutionService.createPendingExecution(any(), any()))
+                .thenAnswer(invocation -> Mono.just(CodeExecution.builder().id("e" + ids.incrementAndGet()).build()));
+        queue = new ExecutionJobQueue(codeExecutionService, 1, 2);
+    }
+
+    @Test
+    public void testFullQueueRejectsSubmissions() {
+        when(codeExecutionService.runExecution(any(), any(), any())).thenReturn(Mono.never());
+        queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block();
+
+        ExecutionQueueFullException error = assertThrows(ExecutionQueueFullException.class,
+                () -> queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block());
+        assertEquals(2, error.getRetryAfterSeconds());
+        assertEquals(1L, queue.stats().get("rejected"));
+        assertEquals(1, queue.stats().get("inProgress"));
+    }
+
+    @Test
+    public void testPermitIsReleasedWhenThePendingRecordCannotBeCreated() {
+        when(codeExecutionService.createPendingExecution(any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("mongo down")));
+
+        assertThrows(IllegalStateException.class,
+                () -> queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block());
+        assertEquals(0, queue.stats().get("inProgress"));
+    }
+
+    @Test
+    public void testPermitIsReleasedWhenTheRunFails() {
+        when(codeExecutionService.runExecution(any(), any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("piston down")))
+                .thenReturn(Mono.just(CodeExecution.builder().build()));
+
+        queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block();
+        assertEquals(0, queue.stats().get("inProgress"));
+        assertNotNull(queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block(),
+                "The freed permit admits the next submission");
+    }
+
+    @Test
+    public void testAwaitCompletionReturnsTheFinishedExecution() {
+        Sinks.One<CodeExecution> run = Sinks.one();
+        when(codeExecutionService.runExecution(any(), any(), eq(UserTier.PRO))).thenReturn(run.asMono());
+        CodeExecution submitted = queue.submit(new CodeExecutionRequest(), "alice", UserTier.PRO).block();
+
+        Mono<CodeExecution> completion = queue.awaitCompletion(submitted.getId(), Duration.ofSeconds(2));
+        CodeExecution finished = CodeExecution.builder().id(submitted.getId())
+                .status(CodeExecution.ExecutionStatus.SUCCESS).build();
+        run.tryEmitValue(finished);
+
+        assertSame(finished, completion.block(Duration.ofSeconds(2)));
+        assertEquals(0, queue.stats().get("inProgress"));
+    }
+
+    @Test
+    public void testAwaitCompletionCompletesEmptyOnTimeout() {
+        when(codeExecutionService.runExecution(any(), any(), any())).thenReturn(Mono.never());
+        CodeExecution submitted = queue.submit(new CodeExecutionRequest(), null, UserTier.ANONYMOUS).block();
+
+        assertNull(queue.awaitCompletion(submitted.getId(), Duration.ofMillis(50)).block(Duration.ofSeconds(2)));
+        assertNull(queue.awaitCompletion("unknown", Duration.ofSeconds(1)).block(Duration.ofSeconds(2)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.major.server.service;
+
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionLaneSchedulerTest {
+
+    private final List<String> started = new ArrayList<>();
+
+    private ExecutionLaneScheduler scheduler(String mode) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.execution.lanes.pro.weight", "3")
+                .withProperty("app.execution.lanes.anonymous.weight", "1")
+                .withProperty("app.execution.lanes.anonymous.queue-capacity", "4");
+        // A single slot, so runs start strictly one after another
+        return new ExecutionLaneScheduler(environment, mode, 1, 10000);
+    }
+
+    /**
+     * Occupies the slot until the returned sink is completed.
+     */
+    private Sinks.Empty<Void> block(ExecutionLaneScheduler scheduler, UserTier tier) {
+        Sinks.Empty<Void> done = Sinks.empty();
+        scheduler.schedule(tier, () -> {
+            started.add("blocker");
+            return done.asMono();
+        }).subscribe();
+        return done;
+    }
+
+    /**
+     * Queues a run that records its start and finishes immediately.
+     */
+    private Disposable submit(ExecutionLaneScheduler scheduler, UserTier tier, String name) {
+        return scheduler.schedule(tier, () -> Mono.fromRunnable(() -> started.add(name)))
+                .subscribe(null, error -> started.add(name + ": " + error.getMessage()));
+    }
+
+    @Test
+    public void testWeightedLanesShareSlotsByWeight() {
+        ExecutionLaneScheduler scheduler = scheduler("weighted");
+        Sinks.Empty<Void> blocker = block(scheduler, UserTier.ANONYMOUS);
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, UserTier.ANONYMOUS, "a" + i);
+        }
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, UserTier.PRO, "p" + i);
+        }
+
+        blocker.tryEmitEmpty();
+
+        // Pro joins at the anonymous lane's virtual time, then gets three slots per anonymous one
+        assertEquals(List.of("blocker", "p1", "a1", "p2", "p3", "p4", "a2", "a3", "a4"), started);
+        assertEquals(0, scheduler.stats().get("running"));
+    }
+
+    @Test
+    public void testStrictLanesServeHigherTiersFirst() {
+        ExecutionLaneScheduler scheduler = scheduler("strict");
+        Sinks.Empty<Void> blocker = block(scheduler, UserTier.ANONYMOUS);
+        submit(scheduler, UserTier.ANONYMOUS, "a1");
+        submit(scheduler, UserTier.AUTHENTICATED, "u1");
+        submit(scheduler, UserTier.PRO, "p1");
+        submit(scheduler, UserTier.PRO, "p2");
+
+        blocker.tryEmitEmpty();
+
+        assertEquals(List.of("blocker", "p1", "p2", "u1", "a1"), started);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullLaneRejectsAndCancelledWaitersLeaveTheQueue() {
+        ExecutionLaneScheduler scheduler = scheduler("weighted");
+        Sinks.Empty<Void> blocker = block(scheduler, UserTier.PRO);
+        for (int i = 1; i <= 5; i++) {
+            submit(scheduler, UserTier.ANONYMOUS, "a" + i);
+        }
+        submit(scheduler, UserTier.PRO, "cancelled").dispose();
+
+        Map<String, Object> anonymous = (Map<String, Object>) scheduler.stats().get("anonymous");
+        Map<String, Object> pro = (Map<String, Object>) scheduler.stats().get("pro");
+        assertEquals("a5: Too many queued executions for anonymous users", started.get(1));
+        assertEquals(1L, anonymous.get("rejected"));
+        assertEquals(4, anonymous.get("queued"));
+        assertEquals(0, pro.get("queued"));
+
+        blocker.tryEmitEmpty();
+        assertEquals(List.of("blocker", "a5: Too many queued executions for anonymous users", "a1", "a2", "a3", "a4"),
+                started);
+    }
+
+    @Test
+    public void testWorkThatThrowsReleasesItsSlot() {
+        ExecutionLaneScheduler scheduler = scheduler("weighted");
+
+        scheduler.schedule(UserTier.PRO, () -> {
+            throw new UnsupportedLanguageException("cobol");
+        }).subscribe(null, error -> started.add("failed"));
+        submit(scheduler, UserTier.PRO, "next");
+
+        assertEquals(List.of("failed", "next"), started);
+    }
+}
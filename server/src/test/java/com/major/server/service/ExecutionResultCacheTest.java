@@ -0,0 +1,32 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionResultCacheTest {
+
+    private final ExecutionResultCache cache = new ExecutionResultCache(true, 100, 1 << 20, 60000);
+
+    @Test
+    public void testCachedHitKeepsTruncationAndExecutionTime() {
+        ExecutionKey key = ExecutionKey.of("python", "3.10.0", "print('x' * 100000)");
+        CodeExecution ran = CodeExecution.builder()
+                .status(CodeExecution.ExecutionStatus.SUCCESS)
+                .output("xxxx")
+                .error("")
+                .outputTruncated(true)
+                .executionTime(42L)
+                .build();
+        cache.put(key, ran);
+
+        CodeExecution hit = CodeExecution.builder().status(CodeExecution.ExecutionStatus.PENDING).build();
+        cache.get(key).orElseThrow().applyTo(hit);
+
+        assertEquals(CodeExecution.ExecutionStatus.SUCCESS, hit.getStatus());
+        assertEquals("xxxx", hit.getOutput());
+        assertTrue(hit.isOutputTruncated());
+        assertEquals(42L, hit.getExecutionTime());
+    }
+}
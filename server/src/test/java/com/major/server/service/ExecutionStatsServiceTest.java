@@ -0,0 +1,105 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import com.major.server.model.ExecutionStatsRecord;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ExecutionStatsServiceTest {
+
+    private final ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+    private final ExecutionStatsService stats = new ExecutionStatsService(template, false, 1000);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCountsCompletedExecutionsWithoutQueryingExecutions() {
+        stats.record(execution("python", CodeExecution.ExecutionStatus.SUCCESS, 120L, "alice"));
+        stats.record(execution("python", CodeExecution.ExecutionStatus.ERROR, 80L, "alice"));
+        stats.record(execution("python", CodeExecution.ExecutionStatus.REJECTED, 0L, null));
+        stats.record(execution("python", CodeExecution.ExecutionStatus.PENDING, 0L, "alice"));
+
+        Map<String, Object> python = stats.languageStats("python").orElseThrow();
+        Map<String, Object> latency = (Map<String, Object>) python.get("latency");
+        assertEquals(3L, python.get("count"));
+        assertEquals(Map.of("SUCCESS", 1L, "ERROR", 1L, "REJECTED", 1L), python.get("byStatus"));
+        assertEquals(2L, latency.get("samples"));
+        assertEquals(120L, latency.get("maxMs"));
+        assertEquals(3L, stats.summary().get("total"));
+
+        when(template.findById(eq("user:alice"), eq(ExecutionStatsRecord.class)))
+                .thenReturn(Mono.just(ExecutionStatsRecord.builder().count(5).build()));
+        assertEquals(7L, stats.userCount("alice").block());
+        verify(template, never()).find(any(), eq(CodeExecution.class));
+    }
+
+    @Test
+    public void testFailedBackfillReleasesTheMarkerAndIsRetried() {
+        ExecutionStatsService backfilling = new ExecutionStatsService(template, true, 1000);
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(template.getCollectionName(ExecutionStatsRecord.class)).thenReturn("execution_stats");
+        when(template.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("execution_stats")))
+                .thenReturn(Mono.just(new Document("before", new Date())));
+        when(template.aggregate(any(Aggregation.class), eq(CodeExecution.class), eq(Document.class)))
+                .thenReturn(Flux.error(new IllegalStateException("mongo down")))
+                .thenReturn(Flux.just(new Document("_id", new Document("language", "python").append("status", "SUCCESS"))
+                        .append("count", 4)))
+                .thenReturn(Flux.empty());
+        when(template.bulkOps(eq(BulkOperations.BulkMode.ORDERED), eq(ExecutionStatsRecord.class))).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulk);
+        when(bulk.updateOne(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        when(template.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(ExecutionStatsRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(template.find(any(Query.class), eq(ExecutionStatsRecord.class))).thenReturn(Flux.empty());
+
+        backfilling.checkpoint().block();
+        backfilling.checkpoint().block();
+
+        ArgumentCaptor<UpdateDefinition> marker = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(template, times(2)).updateFirst(any(Query.class), marker.capture(), eq(ExecutionStatsRecord.class));
+        assertEquals("failed", state(marker.getAllValues().get(0)));
+        assertEquals("done", state(marker.getAllValues().get(1)));
+
+        // The count only applies to a record whose SUCCESS executions were not backfilled yet
+        ArgumentCaptor<Query> increment = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).updateOne(increment.capture(), any(UpdateDefinition.class));
+        assertEquals(new Document("_id", "language:python").append("backfilled", new Document("$ne", "SUCCESS")),
+                increment.getValue().getQueryObject());
+        assertEquals(1L, backfilling.stats().get("checkpointFailures"));
+    }
+
+    private static Object state(UpdateDefinition update) {
+        return ((Update) update).getUpdateObject().get("$set", Document.class).get("state");
+    }
+
+    private static CodeExecution execution(String language, CodeExecution.ExecutionStatus status, long timeMs,
+                                           String userId) {
+        return CodeExecution.builder()
+                .language(language)
+                .status(status)
+                .executionTime(timeMs)
+                .userId(userId)
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.dto.ExecutionStreamEvent;
+import com.major.server.dto.PistonRuntime;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscription;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ExecutionStreamServiceTest {
+
+    private static final PistonRuntime PYTHON = new PistonRuntime("python", "3.10.0");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CodeExecutionStore store;
+    private PistonExecutionBackend backend;
+    private ExecutionStreamService service;
+
+    @BeforeEach
+    public void setUp() {
+        CodeExecutionService codeExecutionService = mock(CodeExecutionService.class);
+        when(codeExecutionService.createPendingExecution(any(), any())).thenAnswer(invocation -> Mono.just(
+                CodeExecution.builder().id("e1").status(CodeExecution.ExecutionStatus.PENDING).build()));
+        when(codeExecutionService.resolveRuntime("python")).thenReturn(PYTHON);
+        store = mock(CodeExecutionStore.class);
+        when(store.complete(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        backend = mock(PistonExecutionBackend.class);
+
+        service = new ExecutionStreamService(codeExecutionService, store, backend,
+                new ExecutionLaneScheduler(new MockEnvironment(), "weighted", 8, 10000));
+        ReflectionTestUtils.setField(service, "bufferSize", 16);
+        ReflectionTestUtils.setField(service, "streamTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(service, "maxOutputChars", 1000);
+    }
+
+    @Test
+    public void testEventsFollowThePistonMessagesInOrder() {
+        piston(message("runtime", "language", "python", "version", "3.10.0"),
+                message("stage", "stage", "run"),
+                message("data", "stream", "stdout", "data", "hi\n"),
+                message("data", "stream", "stderr", "data", "warn"),
+                message("exit", "stage", "run", "code", 0));
+
+        List<ExecutionStreamEvent> events = stream();
+
+        assertEquals(List.of("status:PENDING", "status:RUNNING", "stdout:hi\n", "stderr:warn", "status:SUCCESS"),
+                events.stream().map(ExecutionStreamServiceTest::describe).toList());
+        ExecutionStreamEvent last = events.get(events.size() - 1);
+        assertEquals(0, last.getExitCode());
+        assertFalse(last.getOutputTruncated());
+
+        CodeExecution saved = saved();
+        assertEquals("hi\n", saved.getOutput());
+        assertEquals("warn", saved.getError());
+        assertEquals("3.10.0", saved.getPistonVersion());
+    }
+
+    @Test
+    public void testOutputIsCappedAndReportedAsTruncated() {
+        ReflectionTestUtils.setField(service, "maxOutputChars", 5);
+        piston(message("data", "stream", "stdout", "data", "abc"),
+                message("data", "stream", "stdout", "data", "defgh"),
+                message("data", "stream", "stdout", "data", "ijk"),
+                message("exit", "stage", "run", "code", 0));
+
+        List<ExecutionStreamEvent> events = stream();
+
+        assertEquals(List.of("status:PENDING", "stdout:abc", "stdout:de", "status:SUCCESS"),
+                events.stream().map(ExecutionStreamServiceTest::describe).toList());
+        assertTrue(events.get(events.size() - 1).getOutputTruncated());
+        assertEquals("abcde", saved().getOutput());
+        assertTrue(saved().isOutputTruncated());
+    }
+
+    @Test
+    public void testSlowClientHoldsBackReadingFromPiston() {
+        AtomicLong requested = new AtomicLong();
+        when(backend.stream(eq(PYTHON), any())).thenReturn(Flux.range(0, 1000)
+                .map(i -> message("data", "stream", "stdout", "data", "x"))
+                .doOnRequest(n -> requested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b)));
+
+        BaseSubscriber<ExecutionStreamEvent> slowClient = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(2);
+            }
+        };
+        service.streamExecution(request(), null, UserTier.ANONYMOUS).subscribe(slowClient);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (requested.get() == 0) {
+                Thread.sleep(5);
+            }
+        });
+        assertEquals(16, requested.get(), "Only the buffer is read ahead of the client");
+        slowClient.dispose();
+    }
+
+    @Test
+    public void testRejectedRunEndsRejected() {
+        when(backend.stream(eq(PYTHON), any()))
+                .thenReturn(Flux.error(new ExecutionRejectedException("Execution service is at capacity")));
+
+        assertEquals(CodeExecution.ExecutionStatus.REJECTED, finalStatus(stream()));
+        assertEquals("Execution service is at capacity", saved().getError());
+    }
+
+    @Test
+    public void testFailedRunEndsInError() {
+        when(backend.stream(eq(PYTHON), any())).thenReturn(Flux.concat(
+                Flux.just(message("stage", "stage", "run")),
+                Flux.error(new IllegalStateException("connection reset"))));
+
+        assertEquals(CodeExecution.ExecutionStatus.ERROR, finalStatus(stream()));
+        assertEquals("Error executing code: connection reset", saved().getError());
+    }
+
+    @Test
+    public void testRunThatOutlivesTheStreamTimeoutEndsTimedOut() {
+        ReflectionTestUtils.setField(service, "streamTimeoutMs", 50L);
+        when(backend.stream(eq(PYTHON), any())).thenReturn(Flux.concat(
+                Flux.just(message("stage", "stage", "run")), Flux.never()));
+
+        assertEquals(CodeExecution.ExecutionStatus.TIMEOUT, finalStatus(stream()));
+    }
+
+    @Test
+    public void testClientThatDisconnectsWhileTheRecordIsSavedDoesNotSaveItAgain() {
+        Sinks.One<CodeExecution> save = Sinks.one();
+        doReturn(save.asMono()).when(store).complete(any());
+        piston(message("exit", "stage", "run", "code", 0));
+
+        List<ExecutionStreamEvent> events = new CopyOnWriteArrayList<>();
+        Disposable subscription = service.streamExecution(request(), null, UserTier.ANONYMOUS).subscribe(events::add);
+        verify(store, timeout(2000)).complete(any());
+        subscription.dispose();
+        save.tryEmitValue(CodeExecution.builder().id("e1").status(CodeExecution.ExecutionStatus.SUCCESS).build());
+
+        verify(store, times(1)).complete(any());
+        assertEquals(CodeExecution.ExecutionStatus.SUCCESS, saved().getStatus());
+    }
+
+    @Test
+    public void testClientThatDisconnectsMidRunSavesTheRecordOnce() {
+        when(backend.stream(eq(PYTHON), any())).thenReturn(Flux.concat(
+                Flux.just(message("stage", "stage", "run")), Flux.never()));
+
+        List<ExecutionStreamEvent> events = new CopyOnWriteArrayList<>();
+        Disposable subscription = service.streamExecution(request(), null, UserTier.ANONYMOUS).subscribe(events::add);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (events.size() < 2) {
+                Thread.sleep(5);
+            }
+        });
+        subscription.dispose();
+
+        verify(store, timeout(2000).times(1)).complete(any());
+        assertEquals(CodeExecution.ExecutionStatus.ERROR, saved().getStatus());
+        assertEquals("Client disconnected before the execution finished", saved().getError());
+    }
+
+    private void piston(JsonNode... messages) {
+        when(backend.stream(eq(PYTHON), any())).thenReturn(Flux.just(messages));
+    }
+
+    private List<ExecutionStreamEvent> stream() {
+        return service.streamExecution(request(), null, UserTier.ANONYMOUS).collectList().block(Duration.ofSeconds(5));
+    }
+
+    private CodeExecution saved() {
+        ArgumentCaptor<CodeExecution> saved = ArgumentCaptor.forClass(CodeExecution.class);
+        verify(store).complete(saved.capture());
+        return saved.getValue();
+    }
+
+    private static CodeExecutionRequest request() {
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setLanguage("python");
+        request.setCode("print('hi')");
+        return request;
+    }
+
+    private static CodeExecution.ExecutionStatus finalStatus(List<ExecutionStreamEvent> events) {
+        return events.get(events.size() - 1).getStatus();
+    }
+
+    private static String describe(ExecutionStreamEvent event) {
+        return ExecutionStreamEvent.STATUS.equals(event.getType())
+                ? "status:" + event.getStatus()
+                : event.getStream() + ":" + event.getData();
+    }
+
+    private static JsonNode message(String type, Object... fields) {
+        var node = MAPPER.createObjectNode().put("type", type);
+        for (int i = 0; i < fields.length; i += 2) {
+            node.set((String) fields[i], MAPPER.valueToTree(fields[i + 1]));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,88 @@
+package com.major.server.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightExecutionsTest {
+
+    private static final ExecutionKey KEY = ExecutionKey.of("python", "3.10.0", "print(1)");
+
+    private final InFlightExecutions inFlight = new InFlightExecutions(true);
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    private Mono<String> upstream(Mono<String> result) {
+        return result.doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsShareOneUpstreamSubscription() throws Exception {
+        int callers = 8;
+        Sinks.One<String> response = Sinks.one();
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                CompletableFuture<String> result = new CompletableFuture<>();
+                results.add(result);
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.execute(KEY, () -> upstream(response.asMono()))
+                            .subscribe(result::complete, result::completeExceptionally);
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+            response.tryEmitValue("1\n");
+            for (CompletableFuture<String> result : results) {
+                assertEquals("1\n", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(1L, inFlight.stats().get("upstreamCalls"));
+        assertEquals((long) callers - 1, inFlight.stats().get("coalescedCalls"));
+        assertEquals((double) (callers - 1) / callers, inFlight.stats().get("coalescingRatio"));
+    }
+
+    @Test
+    public void testKeyIsReleasedOnceTheUpstreamSucceeds() {
+        assertEquals("first", inFlight.execute(KEY, () -> upstream(Mono.just("first"))).block(Duration.ofSeconds(1)));
+        assertEquals(0, inFlight.stats().get("inFlight"));
+
+        assertEquals("second", inFlight.execute(KEY, () -> upstream(Mono.just("second"))).block(Duration.ofSeconds(1)));
+        assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    public void testKeyIsReleasedOnceTheUpstreamFails() {
+        Mono<String> failing = inFlight.execute(KEY, () -> upstream(Mono.error(new IllegalStateException("piston down"))));
+        assertThrows(IllegalStateException.class, () -> failing.block(Duration.ofSeconds(1)));
+        assertEquals(0, inFlight.stats().get("inFlight"));
+
+        assertEquals("retried", inFlight.execute(KEY, () -> upstream(Mono.just("retried"))).block(Duration.ofSeconds(1)));
+        assertEquals(2, subscriptions.get());
+        assertEquals(0L, inFlight.stats().get("coalescedCalls"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.major.server.service;
+
+import com.major.server.dto.PistonExecuteResponse;
+import com.major.server.dto.PistonRuntime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compiles and runs real snippets; skipped when the JVM has no system compiler.
+ */
+public class JavaExecutionBackendTest {
+
+    private static final PistonRuntime JAVA = new PistonRuntime("java", "15.0.2");
+
+    private JavaExecutionBackend backend;
+
+    @BeforeEach
+    public void startBackend() {
+        backend = new JavaExecutionBackend(true, 2, 4, 16 << 20, 500, 64 << 20, 1024, 100, 1 << 24);
+        backend.start();
+        assumeTrue(backend.supports(JAVA), "no system Java compiler");
+    }
+
+    @AfterEach
+    public void stopBackend() {
+        backend.shutdown();
+    }
+
+    @Test
+    public void testRunsProgramWithStdin() {
+        String code = """
+                import java.util.Scanner;
+
+                public class Solution {
+                    public static void main(String[] args) {
+                        Scanner in = new Scanner(System.in);
+                        System.out.println(in.nextInt() + in.nextInt());
+                        System.err.print("done");
+                    }
+                }
+                """;
+
+        PistonExecuteResponse response = backend.execute(JAVA, code, "4 5").block();
+
+        assertTrue(response.compile().isSuccessful());
+        assertTrue(response.run().isSuccessful());
+        assertEquals("9\n", response.run().stdout());
+        assertEquals("done", response.run().stderr());
+    }
+
+    @Test
+    public void testUnchangedSourceIsCompiledOnce() {
+        String code = "class Main { static int n; public static void main(String[] a) { System.out.print(++n); } }";
+
+        // Static state is fresh on every run, since each run gets its own classloader
+        assertEquals("1", backend.execute(JAVA, code, null).block().run().stdout());
+        assertEquals("1", backend.execute(JAVA, code, null).block().run().stdout());
+        assertEquals(1L, backend.stats().get("compilations"));
+    }
+
+    @Test
+    public void testCompileErrorsAndDeniedApisFailTheCompileStage() {
+        PistonExecuteResponse syntax = backend.execute(JAVA, "class Main { void main( }", null).block();
+        PistonExecuteResponse exit = backend.execute(JAVA,
+                "class Main { public static void main(String[] a) { System.exit(1); } }", null).block();
+
+        assertFalse(syntax.compile().isSuccessful());
+        assertNull(syntax.run());
+        assertTrue(exit.compile().stderr().contains("java.lang.System.exit"));
+    }
+
+    @Test
+    public void testApisThatStartThreadsAreDenied() {
+        PistonExecuteResponse timer = backend.execute(JAVA, """
+                import java.util.Timer;
+                import java.util.TimerTask;
+
+                class Main {
+                    public static void main(String[] a) {
+                        new Timer().schedule(new TimerTask() {
+                            public void run() {
+                                System.out.println("tick");
+                            }
+                        }, 0, 1);
+                    }
+                }
+                """, null).block();
+        PistonExecuteResponse sort = backend.execute(JAVA,
+                "class Main { public static void main(String[] a) { java.util.Arrays.parallelSort(new int[] {2, 1}); } }",
+                null).block();
+
+        assertFalse(timer.compile().isSuccessful());
+        assertNull(timer.run());
+        assertTrue(timer.compile().stderr().contains("java.util.Timer"));
+        assertTrue(sort.compile().stderr().contains("java.util.Arrays.parallelSort"));
+    }
+
+    @Test
+    public void testUncaughtExceptionShowsOnlyProgramFrames() {
+        PistonExecuteResponse response = backend.execute(JAVA,
+                "class Main { public static void main(String[] a) { throw new IllegalStateException(\"boom\"); } }",
+                null).block();
+
+        assertEquals(1, response.run().code());
+        assertEquals("Exception in thread \"main\" java.lang.IllegalStateException: boom\n\tat Main.main(Main.java:1)\n",
+                response.run().stderr());
+    }
+
+    @Test
+    public void testLimitsStopRunawayPrograms() {
+        PistonExecuteResponse loop = backend.execute(JAVA,
+                "class Main { public static void main(String[] a) { while (true) { } } }", null).block();
+        PistonExecuteResponse chatty = backend.execute(JAVA,
+                "class Main { public static void main(String[] a) { for (int i = 0; i < 1000; i++) System.out.println(i); } }",
+                null).block();
+
+        assertEquals("SIGKILL", loop.run().signal());
+        assertTrue(loop.run().stderr().contains("Time limit exceeded"));
+        assertTrue(chatty.run().truncated());
+        assertEquals(1024, chatty.run().stdout().length());
+    }
+}
@@ -0,0 +1,42 @@
+package com.major.server.service;
+
+import com.major.server.model.CodeExecution;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysetCursorTest {
+
+    @Test
+    public void testRoundTripsTheSortKeyOfAnExecution() {
+        CodeExecution execution = CodeExecution.builder()
+                .id("65f1c0ffee0000000000abcd")
+                .executedAt(LocalDateTime.of(2024, 3, 14, 15, 9, 26, 535_000_000))
+                .build();
+
+        String cursor = KeysetCursor.after(execution).encode();
+        KeysetCursor decoded = KeysetCursor.decode(cursor);
+
+        assertFalse(cursor.contains("/") || cursor.contains("+") || cursor.contains("="));
+        assertEquals(execution.getExecutedAt(), decoded.keyAsDateTime());
+        assertEquals(execution.getId(), decoded.id());
+    }
+
+    @Test
+    public void testRoundTripsNumericKeys() {
+        KeysetCursor decoded = KeysetCursor.decode(KeysetCursor.of(42, "65f1c0ffee0000000000abcd").encode());
+
+        assertEquals(42L, decoded.keyAsLong());
+        assertThrows(IllegalArgumentException.class, decoded::keyAsDateTime);
+    }
+
+    @Test
+    public void testRejectsMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("bm8tc2VwYXJhdG9y"));
+        assertThrows(IllegalArgumentException.class,
+                () -> KeysetCursor.decode(KeysetCursor.of("yesterday", "id").encode()).keyAsDateTime());
+    }
+}
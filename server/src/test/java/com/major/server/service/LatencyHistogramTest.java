@@ -0,0 +1,36 @@
+package com.major.server.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguousAndBoundRelativeError() {
+        int previous = -1;
+        for (long value = 0; value <= 100_000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(index == previous || index == previous + 1, "gap at " + value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= Math.max(1, value / 16), "too coarse at " + value);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        long[] counts = histogram.snapshot();
+
+        assertEquals(0, LatencyHistogram.valueAtQuantile(new long[LatencyHistogram.BUCKETS], 0.5));
+        assertEquals(500, LatencyHistogram.valueAtQuantile(counts, 0.50), 16);
+        assertEquals(950, LatencyHistogram.valueAtQuantile(counts, 0.95), 32);
+        assertEquals(990, LatencyHistogram.valueAtQuantile(counts, 0.99), 32);
+    }
+}
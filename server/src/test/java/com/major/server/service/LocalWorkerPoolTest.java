@@ -0,0 +1,80 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.PistonExecuteResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the Python harness as a real worker process; skipped when python3 is not installed.
+ */
+public class LocalWorkerPoolTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Scheduler scheduler;
+    private LocalWorkerPool pool;
+
+    @BeforeEach
+    public void startPool() throws Exception {
+        Path harness = Path.of(getClass().getResource("/local-harness/python_harness.py").toURI());
+        scheduler = Schedulers.newBoundedElastic(2, 10, "local-exec-test");
+        pool = new LocalWorkerPool("python", List.of("python3", harness.toString()), objectMapper, scheduler,
+                1, 2, 1000, 10000);
+        pool.start();
+        assumeTrue(pool.isAvailable(), "python3 is not available");
+    }
+
+    @AfterEach
+    public void stopPool() {
+        pool.close();
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testRunsProgramWithStdin() throws Exception {
+        PistonExecuteResponse response = pool.execute(job("print(sum(map(int, input().split())))", "1 2 3", 2000), 3000);
+
+        assertEquals("python", response.language());
+        assertEquals("6\n", response.run().stdout());
+        assertTrue(response.run().isSuccessful());
+    }
+
+    @Test
+    public void testTimeoutKillsRunButNotWorker() throws Exception {
+        PistonExecuteResponse response = pool.execute(job("while True: pass", null, 200), 3000);
+
+        assertEquals("SIGKILL", response.run().signal());
+        assertNull(response.run().code());
+        assertEquals("ok\n", pool.execute(job("print('ok')", null, 2000), 3000).run().stdout());
+    }
+
+    @Test
+    public void testWorkerIsRecycledAfterMaxRuns() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            pool.execute(job("print(1)", null, 2000), 3000);
+        }
+        // The replacement starts in the background; the next call waits for it
+        assertEquals("2\n", pool.execute(job("print(2)", null, 2000), 3000).run().stdout());
+        assertEquals(1L, pool.stats().get("recycled"));
+    }
+
+    private String job(String code, String stdin, long timeoutMs) throws Exception {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("code", code);
+        job.put("stdin", stdin);
+        job.put("timeoutMs", timeoutMs);
+        job.put("maxOutputBytes", 65536);
+        return objectMapper.writeValueAsString(job);
+    }
+}
@@ -0,0 +1,106 @@
+package com.major.server.service;
+
+import com.major.server.dto.CodeExecutionRequest;
+import com.major.server.model.CodeExecution;
+import com.major.server.model.UserTier;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the execution pipeline against a stub Piston server and the embedded
+ * Mongo with BlockHound installed, so any blocking call made on a Reactor or
+ * Netty thread fails the test. BlockHound cannot be uninstalled, so this runs in
+ * its own JVM (the {@code blockhound-test} surefire execution).
+ */
+@Tag("blockhound")
+@SpringBootTest
+public class NonBlockingExecutionTest {
+
+    private static final String PISTON_RESPONSE = """
+            {"language":"python","version":"3.10.0",
+             "run":{"stdout":"hello\\n","stderr":"","code":0,"signal":null,"output":"hello\\n"}}
+            """;
+
+    private static final String PISTON_RUNTIMES = """
+            [{"language":"python","version":"3.10.0","aliases":["py","py3","python3"]}]
+            """;
+
+    private static final HttpServer PISTON = startStub();
+
+    @Autowired
+    private CodeExecutionService codeExecutionService;
+
+    @DynamicPropertySource
+    static void pistonProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.piston.api.url",
+                () -> "http://127.0.0.1:" + PISTON.getAddress().getPort() + "/api/v2/piston");
+    }
+
+    @AfterAll
+    public static void stopPiston() {
+        PISTON.stop(0);
+    }
+
+    @Test
+    public void testExecuteCodeDoesNotBlock() {
+        // Class loading and one-time initialisation read from disk; get them out of the way first
+        execute("print('warm up')");
+
+        BlockHound.builder()
+                .allowBlockingCallsInside("ch.qos.logback.core.OutputStreamAppender", "writeBytes")
+                .install();
+
+        CodeExecution execution = execute("print('hello')");
+        assertEquals(CodeExecution.ExecutionStatus.SUCCESS, execution.getStatus());
+        assertEquals("hello\n", execution.getOutput());
+        assertNotNull(execution.getId());
+    }
+
+    private CodeExecution execute(String code) {
+        CodeExecutionRequest request = new CodeExecutionRequest();
+        request.setLanguage("python");
+        request.setCode(code);
+
+        // Subscribe from a non-blocking thread so the whole chain is checked
+        return Mono.defer(() -> codeExecutionService.executeCode(request, null, UserTier.ANONYMOUS))
+                .subscribeOn(Schedulers.parallel())
+                .block(Duration.ofSeconds(30));
+    }
+
+    private static HttpServer startStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = (path.endsWith("/runtimes") ? PISTON_RUNTIMES : PISTON_RESPONSE).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
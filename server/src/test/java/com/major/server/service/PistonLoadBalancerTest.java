@@ -0,0 +1,114 @@
+package com.major.server.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the balancer against local stub Piston servers.
+ */
+public class PistonLoadBalancerTest {
+
+    private HttpServer healthyServer;
+    private HttpServer flakyServer;
+    private final AtomicInteger flakyStatus = new AtomicInteger(503);
+
+    @BeforeEach
+    public void startServers() throws IOException {
+        healthyServer = startStub(new AtomicInteger(200));
+        flakyServer = startStub(flakyStatus);
+    }
+
+    @AfterEach
+    public void stopServers() {
+        healthyServer.stop(0);
+        flakyServer.stop(0);
+    }
+
+    @Test
+    public void testFailingEndpointIsEjectedAndReadmitted() {
+        PistonLoadBalancer balancer = newBalancer(2, 1);
+        PistonEndpoint flaky = balancer.getEndpoints().get(1);
+
+        balancer.probeAll().block();
+        assertTrue(flaky.isHealthy(), "One failed probe should not eject the endpoint");
+
+        balancer.probeAll().block();
+        assertFalse(flaky.isHealthy(), "Endpoint should be ejected after repeated probe failures");
+        for (int i = 0; i < 20; i++) {
+            assertEquals(baseUrl(healthyServer), balancer.choose().getBaseUrl());
+        }
+
+        flakyStatus.set(200);
+        balancer.probeAll().block();
+        assertTrue(flaky.isHealthy(), "Endpoint should be readmitted once probes succeed");
+    }
+
+    @Test
+    public void testRequestFailuresEjectEndpoint() {
+        PistonLoadBalancer balancer = newBalancer(1, 1);
+        PistonEndpoint flaky = balancer.getEndpoints().get(1);
+
+        balancer.execute(endpoint -> endpoint == flaky
+                        ? Mono.error(new IllegalStateException("connection refused"))
+                        : Mono.just("ok"))
+                .onErrorResume(error -> Mono.empty())
+                .repeat(20)
+                .blockLast();
+
+        assertFalse(flaky.isHealthy());
+        assertEquals(0, flaky.getOutstanding());
+    }
+
+    @Test
+    public void testPrefersEndpointWithFewerOutstandingRequests() {
+        PistonLoadBalancer balancer = newBalancer(3, 1);
+        PistonEndpoint busy = balancer.getEndpoints().get(1);
+        for (int i = 0; i < 10; i++) {
+            busy.acquire();
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertNotSame(busy, balancer.choose());
+        }
+    }
+
+    private PistonLoadBalancer newBalancer(int failureThreshold, int recoveryThreshold) {
+        return new PistonLoadBalancer(
+                WebClient.create(),
+                new String[] {baseUrl(healthyServer), baseUrl(flakyServer)},
+                failureThreshold,
+                recoveryThreshold,
+                2000
+        );
+    }
+
+    private static HttpServer startStub(AtomicInteger status) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String baseUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/piston";
+    }
+}
@@ -0,0 +1,90 @@
+package com.major.server.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PistonRequestHedgerTest {
+
+    private final PistonRequestHedger hedger = new PistonRequestHedger(true, 95, 20, 5, 10, 60000);
+    private final AtomicInteger hedgeCalls = new AtomicInteger();
+
+    private Mono<String> hedge(Mono<String> result) {
+        return Mono.defer(() -> {
+            hedgeCalls.incrementAndGet();
+            return result;
+        });
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fast", hedger.execute("python", Mono.just("fast"), hedge(Mono.just("hedge"))).block());
+        }
+        assertEquals(0, hedgeCalls.get());
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedgedAndCancelled() {
+        warmUp();
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        Mono<String> slow = Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                .doOnCancel(() -> primaryCancelled.set(true));
+
+        assertEquals("hedge", hedger.execute("python", slow, hedge(Mono.just("hedge"))).block(Duration.ofSeconds(2)));
+        assertTrue(primaryCancelled.get());
+        assertEquals(1L, hedger.stats().get("hedges"));
+        assertEquals(1L, hedger.stats().get("hedgeWins"));
+    }
+
+    @Test
+    public void testFailedHedgeWaitsForThePrimary() {
+        warmUp();
+        Mono<String> slow = Mono.delay(Duration.ofMillis(200)).thenReturn("primary");
+
+        String result = hedger.execute("python", slow, hedge(Mono.error(new RuntimeException("hedge failed"))))
+                .block(Duration.ofSeconds(2));
+
+        assertEquals("primary", result);
+        assertEquals(1, hedgeCalls.get());
+        assertEquals(0L, hedger.stats().get("hedgeWins"));
+    }
+
+    @Test
+    public void testFastFailureIsNotHedged() {
+        warmUp();
+        Mono<String> rejected = Mono.error(new ExecutionRejectedException("Execution service is at capacity"));
+
+        assertThrows(ExecutionRejectedException.class,
+                () -> hedger.execute("python", rejected, hedge(Mono.just("hedge"))).block(Duration.ofSeconds(2)));
+        assertEquals(0, hedgeCalls.get());
+    }
+
+    @Test
+    public void testNothingIsSpentWhenThereIsNowhereToHedge() {
+        warmUp();
+        Mono<String> slow = Mono.delay(Duration.ofMillis(200)).thenReturn("primary");
+
+        // A single Piston endpoint: the primary's endpoint is the only one
+        for (int i = 0; i < 15; i++) {
+            assertEquals("primary", hedger.execute("python", slow, () -> false, hedge(Mono.just("hedge")))
+                    .block(Duration.ofSeconds(2)));
+        }
+
+        assertEquals(0, hedgeCalls.get());
+        assertEquals(0L, hedger.stats().get("hedges"));
+        assertEquals(0L, hedger.stats().get("budgetExhausted"));
+    }
+
+    @Test
+    public void testNoHedgingBeforeEnoughSamples() {
+        Mono<String> slow = Mono.delay(Duration.ofMillis(100)).thenReturn("primary");
+
+        assertEquals("primary", hedger.execute("java", slow, hedge(Mono.just("hedge"))).block(Duration.ofSeconds(2)));
+        assertEquals(0, hedgeCalls.get());
+    }
+}
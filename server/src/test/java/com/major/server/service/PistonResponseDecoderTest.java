@@ -0,0 +1,107 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.dto.PistonExecuteResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PistonResponseDecoderTest {
+
+    private final PistonResponseDecoder decoder = new PistonResponseDecoder(new ObjectMapper(), 8);
+
+    @Test
+    public void testDecodesTypedResponse() {
+        PistonExecuteResponse response = decode(
+                "{\"language\":\"python\",\"version\":\"3.10.0\",\"run\":"
+                        + "{\"stdout\":\"hi\\n\",\"stderr\":\"\",\"output\":\"hi\\n\",\"code\":0,\"signal\":null}}", 1024);
+
+        assertEquals("python", response.language());
+        assertEquals("3.10.0", response.version());
+        assertNull(response.compile());
+        assertEquals("hi\n", response.run().stdout());
+        assertTrue(response.run().isSuccessful());
+        assertFalse(response.isTruncated());
+    }
+
+    @Test
+    public void testTruncatesFieldsPastTheCap() {
+        PistonExecuteResponse response = decode(
+                "{\"run\":{\"stdout\":\"0123456789\",\"stderr\":\"err\",\"code\":1,\"extra\":{\"a\":[1,2]}}}", 1024);
+
+        assertEquals("01234567", response.run().stdout());
+        assertEquals("err", response.run().stderr());
+        assertEquals(1, response.run().code());
+        assertTrue(response.isTruncated());
+    }
+
+    @Test
+    public void testFieldOfExactlyTheCapIsNotTruncated() {
+        PistonExecuteResponse response = decode("{\"run\":{\"stdout\":\"01234567\",\"code\":0}}", 1024);
+
+        assertEquals("01234567", response.run().stdout());
+        assertFalse(response.isTruncated());
+    }
+
+    @Test
+    public void testLargeBodyIsDecodedUpToTheCapInSmallChunks() {
+        String stdout = "x".repeat(1 << 20);
+        PistonExecuteResponse response = decode("{\"language\":\"python\",\"run\":{\"stdout\":\"" + stdout
+                + "\",\"output\":\"" + stdout + "\",\"code\":0},\"version\":\"3.10.0\"}", 7);
+
+        assertEquals("xxxxxxxx", response.run().stdout());
+        assertEquals(0, response.run().code());
+        assertEquals("3.10.0", response.version(), "Fields after the long ones are still read");
+        assertTrue(response.isTruncated());
+    }
+
+    @Test
+    public void testCutNeverSplitsAnEscapeOrACharacter() {
+        // The cap falls inside "\n", "é", "\u00e9" and "\"", each after seven bytes
+        PistonExecuteResponse response = decode(
+                "{\"compile\":{\"stdout\":\"abcdefg\\n\",\"stderr\":\"abcdefgé\",\"code\":0},"
+                        + "\"run\":{\"stdout\":\"abcdefg\\u00e9\",\"stderr\":\"abcdefg\\\"h\\\"\",\"code\":0}}", 3);
+
+        assertEquals("abcdefg", response.compile().stdout());
+        assertEquals("abcdefg", response.compile().stderr());
+        assertEquals("abcdefg", response.run().stdout());
+        assertEquals("abcdefg", response.run().stderr());
+        assertEquals(0, response.run().code(), "Escaped quotes in the skipped part do not end the string");
+        assertTrue(response.compile().truncated());
+        assertTrue(response.run().truncated());
+    }
+
+    @Test
+    public void testCutIsFlaggedOnlyForItsOwnStage() {
+        PistonExecuteResponse response = decode(
+                "{\"compile\":{\"output\":\"0123456789\",\"code\":0},\"run\":{\"stdout\":\"0123456789\",\"code\":0}}", 4);
+
+        assertFalse(response.compile().truncated(), "The skipped output field does not count");
+        assertTrue(response.run().truncated());
+    }
+
+    @Test
+    public void testRejectsMalformedAndIncompleteBodies() {
+        assertThrows(UncheckedIOException.class, () -> decode("[1,2]", 1024));
+        assertThrows(UncheckedIOException.class, () -> decode("{\"run\":{\"stdout\":\"abc", 1024));
+    }
+
+    private PistonExecuteResponse decode(String body, int chunkSize) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int start = 0; start < bytes.length; start += chunkSize) {
+            chunks.add(DefaultDataBufferFactory.sharedInstance
+                    .wrap(Arrays.copyOfRange(bytes, start, Math.min(bytes.length, start + chunkSize))));
+        }
+        return decoder.decode(Flux.fromIterable(chunks)).block();
+    }
+}
@@ -0,0 +1,46 @@
+package com.major.server.service;
+
+import com.major.server.dto.PistonRuntime;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PistonRuntimeRegistryTest {
+
+    @Test
+    public void testAliasesResolveToHighestVersion() {
+        Map<String, PistonRuntime> aliases = PistonRuntimeRegistry.buildAliases(List.of(
+                new PistonRuntime("python", "3.9.4", List.of("py", "python3"), null),
+                new PistonRuntime("python", "3.10.0", List.of("py", "python3"), null),
+                new PistonRuntime("c++", "10.2.0", List.of("cpp", "g++"), null),
+                new PistonRuntime("javascript", "18.15.0", List.of("node-javascript", "js"), "node")
+        ));
+
+        assertEquals(new PistonRuntime("python", "3.10.0"), aliases.get("python"));
+        assertEquals(new PistonRuntime("python", "3.10.0"), aliases.get("py"));
+        assertEquals(new PistonRuntime("c++", "10.2.0"), aliases.get("cpp"));
+        assertEquals(new PistonRuntime("javascript", "18.15.0"), aliases.get("js"));
+        assertNull(aliases.get("rust"), "Languages that are not installed are not resolvable");
+    }
+
+    @Test
+    public void testCompareVersionsNumerically() {
+        assertTrue(PistonRuntimeRegistry.compareVersions("3.10.0", "3.9.4") > 0);
+        assertTrue(PistonRuntimeRegistry.compareVersions("1.32.3", "18.15.0") < 0);
+        assertEquals(0, PistonRuntimeRegistry.compareVersions("5.0", "5.0.0"));
+        assertEquals(0, PistonRuntimeRegistry.compareVersions("1.02", "1.2"));
+        assertTrue(PistonRuntimeRegistry.compareVersions("1.20240101000000000000", "1.99") > 0,
+                "A segment too long for a long still compares");
+    }
+
+    @Test
+    public void testUnknownLanguageIsRejectedLocally() {
+        PistonRuntimeRegistry registry = new PistonRuntimeRegistry(null, null, 1000);
+
+        assertEquals(new PistonRuntime("python", "*"), registry.resolve("Python"));
+        assertThrows(UnsupportedLanguageException.class, () -> registry.resolve("brainfuck"));
+    }
+}
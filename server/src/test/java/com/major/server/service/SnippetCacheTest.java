@@ -0,0 +1,79 @@
+package com.major.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.major.server.model.Snippet;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnippetCacheTest {
+
+    private final SnippetCache cache = new SnippetCache(new ObjectMapper().findAndRegisterModules(), true, 100, 1 << 20, 0);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Snippet snippet(String code) {
+        return Snippet.builder()
+                .id("s1")
+                .title("Hello")
+                .code(code)
+                .language("python")
+                .userId("u1")
+                .updatedAt(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .build();
+    }
+
+    private Optional<SnippetCache.CachedSnippet> load(Snippet snippet) {
+        return cache.get("s1", () -> {
+            loads.incrementAndGet();
+            return Optional.of(snippet);
+        });
+    }
+
+    @Test
+    public void testServesRepeatedReadsFromTheCache() {
+        SnippetCache.CachedSnippet first = load(snippet("print(1)")).orElseThrow();
+        SnippetCache.CachedSnippet second = load(snippet("print(1)")).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertTrue(new String(first.json()).contains("\"code\":\"print(1)\""));
+    }
+
+    @Test
+    public void testInvalidationReloadsWithANewEtag() {
+        SnippetCache.CachedSnippet before = load(snippet("print(1)")).orElseThrow();
+        cache.invalidate("s1");
+        // Same updatedAt, different content
+        SnippetCache.CachedSnippet after = load(snippet("print(2)")).orElseThrow();
+
+        assertEquals(2, loads.get());
+        assertNotEquals(before.etag(), after.etag());
+    }
+
+    @Test
+    public void testLoadThatRacedWithAWriteIsNotCached() {
+        cache.get("s1", () -> {
+            loads.incrementAndGet();
+            cache.invalidate("s1");
+            return Optional.of(snippet("stale"));
+        });
+        load(snippet("fresh"));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testMatchesIfNoneMatch() {
+        SnippetCache.CachedSnippet cached = load(snippet("print(1)")).orElseThrow();
+
+        assertTrue(cached.matches(cached.etag()));
+        assertTrue(cached.matches("\"other\", W/" + cached.etag()));
+        assertTrue(cached.matches("*"));
+        assertFalse(cached.matches("\"other\""));
+        assertFalse(cached.matches(null));
+    }
+}
@@ -0,0 +1,88 @@
+package com.major.server.service;
+
+import com.major.server.dto.SnippetSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnippetFeedCacheTest {
+
+    private final SnippetFeedCache cache = new SnippetFeedCache(true, 2, 100, 1 << 20, 60000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Page<SnippetSummary> load() {
+        loads.incrementAndGet();
+        return new PageImpl<>(List.of(SnippetSummary.builder().id("s" + loads.get()).preview("print(1)").build()));
+    }
+
+    @Test
+    public void testCachesOnlyTheFirstPagesPerSortAndSize() {
+        PageRequest first = PageRequest.of(0, 20, Sort.by("createdAt").descending());
+
+        Page<SnippetSummary> page = cache.get(SnippetFeedCache.PUBLIC, first, this::load);
+        assertSame(page, cache.get(SnippetFeedCache.PUBLIC, first, this::load));
+        assertEquals(1, loads.get());
+
+        cache.get(SnippetFeedCache.PUBLIC, PageRequest.of(0, 20, Sort.by("title")), this::load);
+        cache.get(SnippetFeedCache.PUBLIC, PageRequest.of(0, 10, Sort.by("createdAt").descending()), this::load);
+        cache.get(SnippetFeedCache.POPULAR, first, this::load);
+        assertEquals(4, loads.get());
+
+        // Past the cached pages
+        PageRequest third = PageRequest.of(2, 20, Sort.by("createdAt").descending());
+        cache.get(SnippetFeedCache.PUBLIC, third, this::load);
+        cache.get(SnippetFeedCache.PUBLIC, third, this::load);
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    public void testInvalidationDropsEveryPage() {
+        PageRequest first = PageRequest.of(0, 20);
+        cache.get(SnippetFeedCache.PUBLIC, first, this::load);
+        cache.get(SnippetFeedCache.POPULAR, first, this::load);
+
+        cache.invalidateAll();
+        cache.get(SnippetFeedCache.PUBLIC, first, this::load);
+        cache.get(SnippetFeedCache.POPULAR, first, this::load);
+
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneQuery() throws Exception {
+        PageRequest first = PageRequest.of(0, 20);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Page<SnippetSummary>> leader = CompletableFuture.supplyAsync(() ->
+                cache.get(SnippetFeedCache.PUBLIC, first, () -> {
+                    loading.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return load();
+                }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Page<SnippetSummary>> follower = CompletableFuture.supplyAsync(() ->
+                cache.get(SnippetFeedCache.PUBLIC, first, this::load));
+        while ((long) cache.stats().get("collapsed") == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,135 @@
+package com.major.server.service;
+
+import com.major.server.dto.CursorPage;
+import com.major.server.dto.SnippetSummary;
+import com.major.server.model.Snippet;
+import com.major.server.repository.SnippetRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SnippetServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private SnippetCache snippetCache;
+    private SnippetService snippetService;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(Snippet.class)).thenReturn("snippets");
+        snippetCache = mock(SnippetCache.class);
+        snippetService = new SnippetService(mock(SnippetRepository.class), snippetCache,
+                mock(SnippetFeedCache.class), mongoTemplate);
+        ReflectionTestUtils.setField(snippetService, "maxFeedLimit", 50);
+    }
+
+    @Test
+    public void testPopularFeedSeeksPastTheStoredStarCountOfThePreviousPage() {
+        when(mongoTemplate.find(any(Query.class), eq(SnippetSummary.class), eq("snippets")))
+                .thenReturn(List.of(summary("a", 5), summary("b", 3), summary("c", 3)));
+
+        CursorPage<SnippetSummary> first = snippetService.findPublicFeed("popular", null, null, null, 2);
+        assertTrue(first.isHasMore());
+        assertEquals(List.of("a", "b"), first.getItems().stream().map(SnippetSummary::getId).toList());
+
+        snippetService.findPublicFeed("popular", null, null, first.getNextCursor(), 2);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(SnippetSummary.class), eq("snippets"));
+        Query second = queries.getAllValues().get(1);
+        Document criteria = second.getQueryObject();
+        assertEquals(new Document("$lte", 3L), criteria.get("starCount"));
+        assertEquals(List.of(
+                new Document("starCount", new Document("$lt", 3L)),
+                new Document("id", new Document("$lt", "b"))), criteria.get("$or"));
+        assertEquals(new Document("starCount", -1).append("id", -1), second.getSortObject());
+        assertEquals(3, second.getLimit());
+    }
+
+    @Test
+    public void testToggleStarStarsWithTheFirstUpdate() {
+        Snippet starred = Snippet.builder().id("s1").starCount(1).build();
+        when(toggle()).thenReturn(starred);
+
+        assertSame(starred, snippetService.toggleStar("s1", "alice"));
+
+        List<Query> updates = toggles(1);
+        assertEquals(new Document("id", "s1").append("starredBy", new Document("$ne", "alice")),
+                updates.get(0).getQueryObject());
+        verify(snippetCache).invalidate("s1");
+    }
+
+    @Test
+    public void testToggleStarUnstarsWhenTheUserHadStarred() {
+        Snippet unstarred = Snippet.builder().id("s1").starCount(0).build();
+        when(toggle()).thenReturn(null, unstarred);
+
+        assertSame(unstarred, snippetService.toggleStar("s1", "alice"));
+
+        List<Query> updates = toggles(2);
+        assertEquals(new Document("id", "s1").append("starredBy", "alice"), updates.get(1).getQueryObject());
+        verify(snippetCache).invalidate("s1");
+    }
+
+    @Test
+    public void testToggleStarLooksAgainWhenBothUpdatesMiss() {
+        Snippet starred = Snippet.builder().id("s1").starCount(1).build();
+        when(toggle()).thenReturn(null, null, starred);
+        when(mongoTemplate.exists(any(Query.class), eq(Snippet.class))).thenReturn(true);
+
+        assertSame(starred, snippetService.toggleStar("s1", "alice"));
+        toggles(3);
+    }
+
+    @Test
+    public void testToggleStarOnMissingSnippetThrows() {
+        when(toggle()).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Snippet.class))).thenReturn(false);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> snippetService.toggleStar("s1", "alice"));
+        assertEquals("Snippet not found", error.getMessage());
+        toggles(2);
+        verifyNoInteractions(snippetCache);
+    }
+
+    @Test
+    public void testToggleStarGivesUpAfterRepeatedRaces() {
+        when(toggle()).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Snippet.class))).thenReturn(true);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> snippetService.toggleStar("s1", "alice"));
+        assertEquals("Snippet is being starred concurrently, try again", error.getMessage());
+        toggles(6);
+        verifyNoInteractions(snippetCache);
+    }
+
+    private Snippet toggle() {
+        return mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Snippet.class));
+    }
+
+    private List<Query> toggles(int expected) {
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(expected)).findAndModify(queries.capture(), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Snippet.class));
+        return queries.getAllValues();
+    }
+
+    private static SnippetSummary summary(String id, int starCount) {
+        return SnippetSummary.builder().id(id).starCount(starCount).build();
+    }
+}
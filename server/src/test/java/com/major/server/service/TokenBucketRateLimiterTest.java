@@ -0,0 +1,91 @@
+package com.major.server.service;
+
+import com.major.server.model.UserTier;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBucketDrainsAndRefills() {
+        TokenBucketRateLimiter limiter = newLimiter(64, 1024);
+        long now = 0;
+
+        assertEquals(2, limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now));
+        assertEquals(1, limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now));
+        assertEquals(0, limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now));
+
+        long denied = limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now);
+        assertTrue(denied < 0);
+        assertEquals(1001, -denied, "One token per second; the wait is rounded up");
+
+        assertEquals(0, limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now + SECOND));
+        assertTrue(limiter.tryConsume("1.2.3.4", UserTier.ANONYMOUS, now + SECOND) < 0);
+    }
+
+    @Test
+    public void testTiersAndKeysAreIndependent() {
+        TokenBucketRateLimiter limiter = newLimiter(64, 1024);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.tryConsume("anon", UserTier.ANONYMOUS, 0);
+        }
+        assertTrue(limiter.tryConsume("anon", UserTier.ANONYMOUS, 0) < 0);
+        assertEquals(2, limiter.tryConsume("other", UserTier.ANONYMOUS, 0));
+        assertEquals(9, limiter.tryConsume("pro@example.com", UserTier.PRO, 0));
+    }
+
+    @Test
+    public void testFullStripeDropsIdleBucketsAndKeepsActiveOnes() {
+        // One stripe of four slots holding at most three keys
+        TokenBucketRateLimiter limiter = newLimiter(1, 2);
+        limiter.tryConsume("a", UserTier.ANONYMOUS, 0);
+        limiter.tryConsume("b", UserTier.ANONYMOUS, 0);
+        limiter.tryConsume("c", UserTier.ANONYMOUS, 0);
+
+        // "c" is touched again, so only "a" and "b" are idle when "d" arrives
+        long later = 10 * SECOND;
+        assertEquals(2, limiter.tryConsume("c", UserTier.ANONYMOUS, later));
+        assertEquals(2, limiter.tryConsume("d", UserTier.ANONYMOUS, later));
+
+        assertEquals(1, limiter.tryConsume("c", UserTier.ANONYMOUS, later), "Active bucket state is kept");
+        assertEquals(2, limiter.tryConsume("a", UserTier.ANONYMOUS, later));
+    }
+
+    @Test
+    public void testFullStripeOfActiveBucketsNeverHandsOutAFreshBucket() {
+        TokenBucketRateLimiter limiter = newLimiter(1, 2);
+        assertEquals(2, limiter.tryConsume("a", UserTier.ANONYMOUS, 0));
+        assertEquals(2, limiter.tryConsume("b", UserTier.ANONYMOUS, 1));
+        assertEquals(2, limiter.tryConsume("c", UserTier.ANONYMOUS, 2));
+
+        // "d" pushes out "a", the least recently used, and starts empty
+        assertTrue(limiter.tryConsume("d", UserTier.ANONYMOUS, 3) < 0);
+        assertTrue(limiter.tryConsume("a", UserTier.ANONYMOUS, 4) < 0, "The dropped caller does not start over full");
+        assertEquals(1, limiter.tryConsume("c", UserTier.ANONYMOUS, 5));
+        assertEquals(2L, limiter.stats().get("takeovers"));
+    }
+
+    @Test
+    public void testLargeRequestsNeedAFullBucketAndLeaveItInDebt() {
+        TokenBucketRateLimiter limiter = newLimiter(64, 1024);
+
+        assertEquals(1, limiter.tryConsumeTokens("batch", UserTier.ANONYMOUS, 2, 0));
+        assertEquals(-2001, limiter.tryConsumeTokens("batch", UserTier.ANONYMOUS, 5, 0),
+                "Two more tokens, at one per second, before a full bucket is available");
+
+        // Five tokens from a full bucket of three leaves two owed
+        assertEquals(0, limiter.tryConsumeTokens("batch", UserTier.ANONYMOUS, 5, 2 * SECOND));
+        assertTrue(limiter.tryConsume("batch", UserTier.ANONYMOUS, 4 * SECOND) < 0);
+        assertEquals(0, limiter.tryConsume("batch", UserTier.ANONYMOUS, 5 * SECOND));
+    }
+
+    private static TokenBucketRateLimiter newLimiter(int stripes, int keysPerStripe) {
+        return new TokenBucketRateLimiter(stripes, keysPerStripe, 3, 1.0, 5, 2.0, 10, 5.0);
+    }
+}
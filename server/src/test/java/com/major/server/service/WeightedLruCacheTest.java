@@ -0,0 +1,57 @@
+package com.major.server.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeightedLruCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenEntryLimitIsReached() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(2, Long.MAX_VALUE, 0, String::length);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"), "Least recently used entry should be evicted");
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void testEvictsWhenWeightLimitIsReached() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(100, 10, 0, String::length);
+
+        cache.put("a", "xxxxxx");
+        cache.put("b", "yyyyyy");
+
+        assertNull(cache.get("a"));
+        assertEquals("yyyyyy", cache.get("b"));
+        assertEquals(6, cache.weight());
+    }
+
+    @Test
+    public void testRejectsValuesHeavierThanTheWholeCache() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(100, 4, 0, String::length);
+
+        cache.put("a", "too long");
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testExpiredEntriesAreMisses() throws InterruptedException {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(100, 100, 1, String::length);
+
+        cache.put("a", "1");
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+}